@@ -0,0 +1,91 @@
+package com.epam.reportportal.calculation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of {@link BatchProcessing#add(Object)} with concurrent producers and a sink that does nothing,
+ * so the numbers show the cost of batching itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchProcessingBenchmark {
+
+	@Param({ "300", "1000" })
+	private int batchSize;
+
+	@Param({ "1", "4" })
+	private int flushParallelism;
+
+	private final LongAdder processed = new LongAdder();
+	private BatchProcessing<Long> processing;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		processing = new BatchProcessing<>(batchSize, 1000, batchSize * 10, flushParallelism, flushParallelism * 2) {
+			@Override
+			protected Object partitionKey(Long object) {
+				return object;
+			}
+
+			@Override
+			protected void process(List<Long> objectList) {
+				processed.add(objectList.size());
+			}
+		};
+		processing.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		processing.close();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void add1Producer(Producer producer) {
+		producer.add(processing);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void add4Producers(Producer producer) {
+		producer.add(processing);
+	}
+
+	@Benchmark
+	@Threads(16)
+	public void add16Producers(Producer producer) {
+		producer.add(processing);
+	}
+
+	@Benchmark
+	@Threads(64)
+	public void add64Producers(Producer producer) {
+		producer.add(processing);
+	}
+
+	@State(Scope.Thread)
+	public static class Producer {
+
+		private long next;
+
+		void add(BatchProcessing<Long> processing) {
+			processing.add(next++ & 0xFF);
+		}
+	}
+}
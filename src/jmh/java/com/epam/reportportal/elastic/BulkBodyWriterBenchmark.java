@@ -0,0 +1,47 @@
+package com.epam.reportportal.elastic;
+
+import com.epam.reportportal.log.LogMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of logs into bulk request bodies across batch and message sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BulkBodyWriterBenchmark {
+
+	@Param({ "1", "100", "1000" })
+	private int batchSize;
+
+	@Param({ "100", "2048", "65536" })
+	private int messageSize;
+
+	private final BulkBodyWriter writer = new BulkBodyWriter();
+	private List<LogMessage> logs;
+
+	@Setup
+	public void setUp() {
+		logs = LogMessages.generate(batchSize, messageSize);
+	}
+
+	@Benchmark
+	public int write() {
+		return writer.write(logs).size();
+	}
+
+	@Benchmark
+	public int writeWithIndex() {
+		return writer.writeWithIndex(logs).size();
+	}
+}
@@ -0,0 +1,36 @@
+package com.epam.reportportal.elastic;
+
+import com.epam.reportportal.log.LogMessage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+final class LogMessages {
+
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789 \t\"\\\n";
+	private static final int LAUNCHES = 10;
+
+	private LogMessages() {
+	}
+
+	/**
+	 * @param count       Amount of logs
+	 * @param messageSize Length of every message, messages contain characters which have to be escaped in JSON
+	 * @return Logs of a few launches of the same project
+	 */
+	static List<LogMessage> generate(int count, int messageSize) {
+		Random random = new Random(count);
+		LocalDateTime now = LocalDateTime.now();
+		List<LogMessage> logs = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			StringBuilder message = new StringBuilder(messageSize);
+			for (int c = 0; c < messageSize; c++) {
+				message.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+			logs.add(new LogMessage((long) i, now.plusNanos(i * 1000L), message.toString(), (long) i, (long) (i % LAUNCHES), 1L));
+		}
+		return logs;
+	}
+}
@@ -0,0 +1,104 @@
+package com.epam.reportportal.elastic;
+
+import com.epam.reportportal.log.LogMessage;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk save against a local stub which drains the request and answers like Elasticsearch without errors,
+ * so the numbers show the client side of a request: serialization, compression and response parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SimpleElasticSearchClientBenchmark {
+
+	private static final byte[] SUCCESS = "{\"took\":1,\"errors\":false,\"items\":[]}".getBytes(StandardCharsets.UTF_8);
+
+	@Param({ "100", "1000" })
+	private int batchSize;
+
+	@Param({ "100", "2048" })
+	private int messageSize;
+
+	@Param({ "true", "false" })
+	private boolean multiIndex;
+
+	@Param({ "true", "false" })
+	private boolean compression;
+
+	private ExecutorService serverExecutor;
+	private HttpServer server;
+	private HttpComponentsClientHttpRequestFactory requestFactory;
+	private SimpleElasticSearchClient client;
+	private List<LogMessage> logs;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		// otherwise Nagle's algorithm on the stub side adds a delayed ACK to every response
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.createContext("/", exchange -> {
+			try (InputStream body = exchange.getRequestBody()) {
+				body.transferTo(OutputStream.nullOutputStream());
+			}
+			exchange.sendResponseHeaders(200, SUCCESS.length);
+			try (OutputStream outputStream = exchange.getResponseBody()) {
+				outputStream.write(SUCCESS);
+			}
+		});
+		server.start();
+
+		requestFactory = new HttpComponentsClientHttpRequestFactory();
+		requestFactory.setBufferRequestBody(false);
+		RefreshProperties refreshProperties = new RefreshProperties();
+		refreshProperties.setPolicy(RefreshPolicy.NONE);
+		client = new SimpleElasticSearchClient(requestFactory,
+				"http://localhost:" + server.getAddress().getPort(),
+				"",
+				"",
+				multiIndex,
+				0,
+				0,
+				compression,
+				refreshProperties,
+				new SimpleMeterRegistry()
+		);
+		logs = LogMessages.generate(batchSize, messageSize);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		requestFactory.destroy();
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	@Benchmark
+	public void save() {
+		client.save(logs);
+	}
+}
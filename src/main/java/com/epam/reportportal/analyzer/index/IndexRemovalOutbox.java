@@ -0,0 +1,187 @@
+package com.epam.reportportal.analyzer.index;
+
+import com.epam.reportportal.model.index.CleanIndexByDateRangeRq;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Coalesces removals of analyzer index documents by date. Only the latest date is kept for a project and route, since
+ * it covers all earlier ones, and pending removals are published together with publisher confirms once per
+ * {@code flushInterval}. Removals are kept until the broker confirms them, and stored in a file, if configured, to be
+ * published after a restart.
+ */
+@Component
+public class IndexRemovalOutbox {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(IndexRemovalOutbox.class);
+
+	private static final String EXCHANGE_NAME = "analyzer-default";
+	// need to be in line with analyzer API, better to fix api and remove it in future.
+	private static final LocalDateTime OLDEST_DATE = LocalDateTime.now().minusYears(10L);
+
+	private final RabbitTemplate rabbitTemplate;
+	private final ObjectMapper objectMapper;
+	private final Path file;
+	private final long confirmTimeout;
+	private final Map<Key, LocalDateTime> pending = new LinkedHashMap<>();
+
+	/**
+	 * @param file           File of pending removals, empty to keep them in memory only
+	 * @param confirmTimeout Max wait for publisher confirms of a flush, milliseconds
+	 */
+	public IndexRemovalOutbox(@Qualifier("analyzerRabbitTemplate") RabbitTemplate rabbitTemplate, ObjectMapper objectMapper,
+			@Value("${rp.amqp.indexRemoval.file}") String file, @Value("${rp.amqp.indexRemoval.confirmTimeout}") long confirmTimeout) {
+		this.rabbitTemplate = rabbitTemplate;
+		this.objectMapper = objectMapper;
+		this.file = file == null || file.isBlank() ? null : Paths.get(file);
+		this.confirmTimeout = confirmTimeout;
+		load();
+	}
+
+	/**
+	 * @param projectId    Index of the project
+	 * @param route        Removal route of the analyzer
+	 * @param lessThanDate Documents before this date are removed
+	 */
+	public synchronized void add(Long projectId, String route, LocalDateTime lessThanDate) {
+		pending.merge(new Key(projectId, route), lessThanDate, (previous, next) -> next.isAfter(previous) ? next : previous);
+		store();
+	}
+
+	/**
+	 * @return Amount of pending removals
+	 */
+	public synchronized int size() {
+		return pending.size();
+	}
+
+	@Scheduled(fixedDelayString = "${rp.amqp.indexRemoval.flushInterval}")
+	public void flush() {
+		final Map<Key, LocalDateTime> batch;
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			batch = new LinkedHashMap<>(pending);
+		}
+		try {
+			rabbitTemplate.invoke(operations -> {
+				batch.forEach((key, lessThanDate) -> operations.convertAndSend(EXCHANGE_NAME,
+						key.route,
+						new CleanIndexByDateRangeRq(key.projectId, OLDEST_DATE, lessThanDate)
+				));
+				operations.waitForConfirmsOrDie(confirmTimeout);
+				return null;
+			});
+		} catch (AmqpException e) {
+			LOGGER.warn("Unable to publish {} index removals, they are retried on the next flush: {}", batch.size(), e.getMessage());
+			return;
+		}
+		synchronized (this) {
+			// a later date added during the flush is kept for the next one
+			batch.forEach(pending::remove);
+			store();
+		}
+		LOGGER.info("Published {} index removals", batch.size());
+	}
+
+	private void load() {
+		if (file == null || !Files.exists(file)) {
+			return;
+		}
+		try {
+			List<PendingRemoval> removals = objectMapper.readValue(file.toFile(), new TypeReference<List<PendingRemoval>>() {
+			});
+			removals.forEach(removal -> pending.put(new Key(removal.projectId, removal.route), removal.lessThanDate));
+			LOGGER.info("Loaded {} pending index removals from {}", pending.size(), file);
+		} catch (IOException e) {
+			LOGGER.error("Unable to load pending index removals from {}", file, e);
+		}
+	}
+
+	private void store() {
+		if (file == null) {
+			return;
+		}
+		final List<PendingRemoval> removals = new ArrayList<>(pending.size());
+		pending.forEach((key, lessThanDate) -> removals.add(new PendingRemoval(key.projectId, key.route, lessThanDate)));
+		try {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+			objectMapper.writeValue(temp.toFile(), removals);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOGGER.error("Unable to store pending index removals to {}", file, e);
+		}
+	}
+
+	private static final class Key {
+
+		private final Long projectId;
+		private final String route;
+
+		private Key(Long projectId, String route) {
+			this.projectId = projectId;
+			this.route = route;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Key key = (Key) o;
+			return Objects.equals(projectId, key.projectId) && Objects.equals(route, key.route);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(projectId, route);
+		}
+	}
+
+	static final class PendingRemoval {
+
+		@JsonProperty("project")
+		private Long projectId;
+
+		@JsonProperty("route")
+		private String route;
+
+		@JsonProperty("lessThanDate")
+		private LocalDateTime lessThanDate;
+
+		PendingRemoval() {
+		}
+
+		PendingRemoval(Long projectId, String route, LocalDateTime lessThanDate) {
+			this.projectId = projectId;
+			this.route = route;
+			this.lessThanDate = lessThanDate;
+		}
+	}
+}
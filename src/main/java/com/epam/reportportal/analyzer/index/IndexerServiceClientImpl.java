@@ -1,7 +1,6 @@
 package com.epam.reportportal.analyzer.index;
 
 import com.epam.reportportal.analyzer.RabbitMqManagementClient;
-import com.epam.reportportal.model.index.CleanIndexByDateRangeRq;
 import com.epam.reportportal.model.index.CleanIndexRq;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,18 +25,17 @@ public class IndexerServiceClientImpl implements IndexerServiceClient {
 	private static final String CLEAN_ROUTE = "clean";
 	private static final String CLEAN_BY_LOG_DATE_ROUTE = "remove_by_log_time";
 	private static final String CLEAN_BY_LAUNCH_DATE_ROUTE = "remove_by_launch_start_time";
-	private static final String EXCHANGE_NAME = "analyzer-default";
-	// need to be in line with analyzer API, better to fix api and remove it in future.
-	private static final LocalDateTime OLDEST_DATE = LocalDateTime.now().minusYears(10L);
 
 	private final RabbitMqManagementClient rabbitMqManagementClient;
 	private final RabbitTemplate rabbitTemplate;
+	private final IndexRemovalOutbox indexRemovalOutbox;
 
 	@Autowired
 	public IndexerServiceClientImpl(RabbitMqManagementClient rabbitMqManagementClient,
-			@Qualifier("analyzerRabbitTemplate") RabbitTemplate rabbitTemplate) {
+			@Qualifier("analyzerRabbitTemplate") RabbitTemplate rabbitTemplate, IndexRemovalOutbox indexRemovalOutbox) {
 		this.rabbitMqManagementClient = rabbitMqManagementClient;
 		this.rabbitTemplate = rabbitTemplate;
+		this.indexRemovalOutbox = indexRemovalOutbox;
 	}
 
 	@Override
@@ -70,8 +68,7 @@ public class IndexerServiceClientImpl implements IndexerServiceClient {
 	}
 
 	private void sendRangeRemovingMessageToRoute(Long index, LocalDateTime lessThanDate, String route) {
-		CleanIndexByDateRangeRq message = new CleanIndexByDateRangeRq(index, OLDEST_DATE, lessThanDate);
-		rabbitTemplate.convertAndSend(EXCHANGE_NAME, route, message);
+		indexRemovalOutbox.add(index, route, lessThanDate);
 	}
 
 }
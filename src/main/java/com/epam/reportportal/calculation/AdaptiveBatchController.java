@@ -0,0 +1,148 @@
+package com.epam.reportportal.calculation;
+
+import java.util.Arrays;
+
+/**
+ * Adjusts batch size and timeout of {@link BatchProcessing} within bounds, additive increase and multiplicative decrease.
+ * <p>
+ * The batch size grows step by step while batches fill up before the timeout and flushes stay under the target latency
+ * and payload size. It is halved when the 99th percentile of the latency of recent flushes exceeds the target latency,
+ * on a flush over the target payload size, or throttled by the receiver. Latencies measured before a decrease are
+ * discarded, as they belong to bigger batches. The growth stops at the size which is expected to reach the target
+ * payload, judging by the average object size.
+ * <p>
+ * The timeout grows while batches fill up by size, and is halved when batches are flushed by timeout less than half full,
+ * so a quiet stream isn't delayed for nothing.
+ */
+public class AdaptiveBatchController {
+
+	private static final int STEPS = 20;
+	private static final int DEFAULT_LATENCY_WINDOW = 100;
+	private static final double LATENCY_PERCENTILE = 0.99;
+	// weight of the latest flush in the average object size
+	private static final double OBJECT_SIZE_WEIGHT = 0.2;
+
+	private final int minBatchSize;
+	private final int maxBatchSize;
+	private final long minTimeout;
+	private final long maxTimeout;
+	private final long targetLatency;
+	private final long targetPayloadSize;
+	private final int batchSizeStep;
+	private final long timeoutStep;
+	private final long[] latencies;
+
+	private volatile int batchSize;
+	private volatile long timeout;
+	private double objectSize;
+	private boolean overloaded;
+	private int latencyCount;
+	private int latencyIndex;
+
+	/**
+	 * @param batchSize         Initial batch size, kept within the bounds
+	 * @param minBatchSize      Min batch size
+	 * @param maxBatchSize      Max batch size
+	 * @param timeout           Initial timeout, kept within the bounds, milliseconds
+	 * @param minTimeout        Min timeout, milliseconds
+	 * @param maxTimeout        Max timeout, milliseconds
+	 * @param targetLatency     Max processing time of a batch, milliseconds
+	 * @param targetPayloadSize Max payload of a batch, bytes
+	 */
+	public AdaptiveBatchController(int batchSize, int minBatchSize, int maxBatchSize, long timeout, long minTimeout, long maxTimeout,
+			long targetLatency, long targetPayloadSize) {
+		this(batchSize, minBatchSize, maxBatchSize, timeout, minTimeout, maxTimeout, targetLatency, targetPayloadSize,
+				DEFAULT_LATENCY_WINDOW
+		);
+	}
+
+	/**
+	 * @param latencyWindow Amount of recent flushes the latency percentile is calculated of
+	 */
+	public AdaptiveBatchController(int batchSize, int minBatchSize, int maxBatchSize, long timeout, long minTimeout, long maxTimeout,
+			long targetLatency, long targetPayloadSize, int latencyWindow) {
+		if (minBatchSize <= 0 || maxBatchSize < minBatchSize || minTimeout <= 0 || maxTimeout < minTimeout) {
+			throw new IllegalArgumentException("Min batch size and timeout must be greater than 0 and not greater than max ones");
+		}
+		if (targetLatency <= 0 || targetPayloadSize <= 0 || latencyWindow <= 0) {
+			throw new IllegalArgumentException("Target latency, payload size and latency window must be greater than 0");
+		}
+		this.minBatchSize = minBatchSize;
+		this.maxBatchSize = maxBatchSize;
+		this.minTimeout = minTimeout;
+		this.maxTimeout = maxTimeout;
+		this.targetLatency = targetLatency;
+		this.targetPayloadSize = targetPayloadSize;
+		this.batchSizeStep = Math.max(1, (maxBatchSize - minBatchSize) / STEPS);
+		this.timeoutStep = Math.max(1, (maxTimeout - minTimeout) / STEPS);
+		this.latencies = new long[latencyWindow];
+		this.batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, batchSize));
+		this.timeout = Math.max(minTimeout, Math.min(maxTimeout, timeout));
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Notified when a batch is sealed.
+	 *
+	 * @param trigger Reason of the flush
+	 * @param size    Amount of objects in the batch
+	 */
+	public synchronized void onSealed(FlushTrigger trigger, int size) {
+		if (trigger == FlushTrigger.SIZE) {
+			timeout = Math.min(maxTimeout, timeout + timeoutStep);
+			if (!overloaded) {
+				batchSize = Math.min(payloadBound(), batchSize + batchSizeStep);
+			}
+		} else if (trigger == FlushTrigger.TIMEOUT && size < batchSize / 2) {
+			timeout = Math.max(minTimeout, timeout / 2);
+		}
+	}
+
+	/**
+	 * Notified when a batch, or a part of it with parallel flush, is processed.
+	 *
+	 * @param size        Amount of processed objects
+	 * @param payloadSize Size of the sent payload, bytes, 0 if unknown
+	 * @param latency     Processing time, milliseconds
+	 * @param throttled   Whether the receiver rejected some objects because of the load
+	 */
+	public synchronized void onProcessed(int size, long payloadSize, long latency, boolean throttled) {
+		if (size > 0 && payloadSize > 0) {
+			double latestObjectSize = (double) payloadSize / size;
+			objectSize = objectSize == 0 ? latestObjectSize : objectSize + OBJECT_SIZE_WEIGHT * (latestObjectSize - objectSize);
+		}
+		latencies[latencyIndex] = latency;
+		latencyIndex = (latencyIndex + 1) % latencies.length;
+		latencyCount = Math.min(latencies.length, latencyCount + 1);
+		overloaded = throttled || latencyPercentile() > targetLatency || payloadSize > targetPayloadSize;
+		if (overloaded) {
+			batchSize = Math.max(minBatchSize, batchSize / 2);
+			latencyCount = 0;
+			latencyIndex = 0;
+		}
+	}
+
+	private long latencyPercentile() {
+		long[] window = Arrays.copyOf(latencies, latencyCount);
+		Arrays.sort(window);
+		return window[(int) Math.ceil(LATENCY_PERCENTILE * latencyCount) - 1];
+	}
+
+	private int payloadBound() {
+		if (objectSize == 0) {
+			return maxBatchSize;
+		}
+		return (int) Math.max(minBatchSize, Math.min(maxBatchSize, targetPayloadSize / objectSize));
+	}
+}
@@ -1,65 +1,518 @@
 package com.epam.reportportal.calculation;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.TaskScheduler;
 
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ScheduledFuture;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Batch processing, grouping in batch based on amount or time unit.
+ * <p>
+ * Objects are buffered from the start, the flush thread processes them after {@link #start()}. Processing created by
+ * the constructor with a {@link TaskScheduler} starts on the first added object, the scheduler is not used anymore.
+ * <p>
+ * {@link #process(List)} gets a list of its own, which it is free to modify.
+ * <p>
+ * Producers never take a lock: a slot in the current batch is claimed with a single atomic increment, and the producer
+ * that takes the last slot swaps in an empty batch. Sealed batches are handed to a dedicated flush thread as they are,
+ * without copying. Batches that don't fill up in time are swapped by the flush thread after {@code timeout} ms.
+ * <p>
+ * At most {@code capacity} objects may be buffered or being processed at a time, {@link #add(Object)} blocks the caller
+ * until a flush frees some room.
+ * <p>
+ * With {@code flushParallelism} greater than 1 every sealed batch is split into flush lanes by {@link #partitionKey(Object)},
+ * and lanes are processed concurrently. Objects with the same key always go to the same lane, so their order is kept.
+ * No more than {@code maxInFlightBatches} lane batches may be queued or processed at a time.
+ * <p>
+ * An object may be added with a {@link FlushCallback}, notified when the batch with the object is processed.
+ * <p>
+ * Objects which don't fit into the buffer, and {@link #unprocessed(List, Exception)} objects of failed batches, are
+ * passed to {@link #spill(List)}.
+ * Spilled objects are considered processed, the caller is not blocked by a full buffer when spilling succeeds.
+ * <p>
+ * With an {@link AdaptiveBatchController} every new batch takes the current batch size and timeout of the controller,
+ * which is notified about every sealed batch. Processing results are reported to the controller by the subclass.
+ * <p>
+ * With a {@link Weigher} a batch is also sealed when the total weight of its objects reaches {@code maxBatchWeight}.
+ * An object which would take a non-empty batch over the limit starts a new batch. Concurrent producers may still take
+ * a batch over the limit by one object each.
  * @param <T>
  */
-public abstract class BatchProcessing<T> {
+public abstract class BatchProcessing<T> implements AutoCloseable {
 
-	private List<T> objectList;
-	private final TaskScheduler scheduler;
-	private volatile ScheduledFuture<?> scheduledTask;
-	private int batchSize;
-	private long timeout;
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchProcessing.class);
+	private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
 
+	private final AtomicReference<Batch<T>> currentBatch;
+	private final BlockingQueue<Batch<T>> sealedBatches = new LinkedBlockingQueue<>();
+	private final Semaphore capacity;
+	private final int maxCapacity;
+	private final Thread flushThread;
+	private final ExecutorService[] flushLanes;
+	private final Semaphore inFlightBatches;
+	private final int maxInFlightBatches;
+	private final int batchSize;
+	private final long timeout;
+	private final AdaptiveBatchController controller;
+	private final Weigher<T> weigher;
+	private final long maxBatchWeight;
+	private volatile boolean running = true;
+	private boolean startOnAdd;
+
+	/**
+	 * Unbounded processing which starts on the first added object.
+	 *
+	 * @param scheduler Not used, batches are flushed by the flush thread
+	 */
 	public BatchProcessing(int batchSize, long timeout, TaskScheduler scheduler) {
-		if (timeout < 0 || scheduler == null) {
-			throw new IllegalArgumentException("Timeout must be greater than 0 and scheduler must be not null");
+		this(batchSize, timeout, Integer.MAX_VALUE);
+		this.startOnAdd = true;
+	}
+
+	public BatchProcessing(int batchSize, long timeout, int capacity) {
+		this(batchSize, timeout, capacity, 1, 1);
+	}
+
+	public BatchProcessing(int batchSize, long timeout, int capacity, int flushParallelism, int maxInFlightBatches) {
+		this(batchSize, timeout, capacity, flushParallelism, maxInFlightBatches, null);
+	}
+
+	/**
+	 * @param controller Controller of batch size and timeout, {@code batchSize} and {@code timeout} are fixed if {@code null}
+	 */
+	public BatchProcessing(int batchSize, long timeout, int capacity, int flushParallelism, int maxInFlightBatches,
+			AdaptiveBatchController controller) {
+		this(batchSize, timeout, capacity, flushParallelism, maxInFlightBatches, controller, null, 0);
+	}
+
+	/**
+	 * @param controller     Controller of batch size and timeout, {@code batchSize} and {@code timeout} are fixed if {@code null}
+	 * @param weigher        Weigher of objects, batches are not limited by weight if {@code null}
+	 * @param maxBatchWeight Max total weight of a batch
+	 */
+	public BatchProcessing(int batchSize, long timeout, int capacity, int flushParallelism, int maxInFlightBatches,
+			AdaptiveBatchController controller, Weigher<T> weigher, long maxBatchWeight) {
+		if (batchSize <= 0 || timeout <= 0 || capacity < batchSize) {
+			throw new IllegalArgumentException("Batch size and timeout must be greater than 0 and capacity must be not less than batch size");
+		}
+		if (flushParallelism <= 0 || maxInFlightBatches <= 0) {
+			throw new IllegalArgumentException("Flush parallelism and max in-flight batches must be greater than 0");
+		}
+		if (controller != null && capacity < controller.getMaxBatchSize()) {
+			throw new IllegalArgumentException("Capacity must be not less than max batch size of the controller");
+		}
+		if (weigher != null && maxBatchWeight <= 0) {
+			throw new IllegalArgumentException("Max batch weight must be greater than 0");
 		}
-		objectList = new ArrayList<>();
 		this.batchSize = batchSize;
 		this.timeout = timeout;
-		this.scheduler = scheduler;
-		this.scheduledTask = this.scheduler.schedule(this::processAndSchedule, getNextTime());
+		this.controller = controller;
+		this.weigher = weigher;
+		this.maxBatchWeight = maxBatchWeight;
+		this.capacity = new Semaphore(capacity);
+		this.maxCapacity = capacity;
+		this.inFlightBatches = new Semaphore(maxInFlightBatches);
+		this.maxInFlightBatches = maxInFlightBatches;
+		this.currentBatch = new AtomicReference<>(new Batch<>(getBatchSize()));
+		this.flushLanes = flushParallelism > 1 ? createFlushLanes(flushParallelism) : null;
+		this.flushThread = new Thread(this::flushLoop, getClass().getSimpleName() + "-flush");
+		this.flushThread.setDaemon(true);
 	}
 
-	private Date getNextTime() {
-		return new Date(System.currentTimeMillis() + this.timeout);
+	/**
+	 * Starts the flush thread, does nothing if it is already started.
+	 */
+	public synchronized void start() {
+		if (flushThread.getState() == Thread.State.NEW) {
+			flushThread.start();
+		}
 	}
 
 	public void add(T message) {
-		synchronized (this) {
-			this.objectList.add(message);
-			if (this.objectList.size() >= this.batchSize) {
-				processAndSchedule();
+		add(message, null);
+	}
+
+	/**
+	 * @param message  Object to process
+	 * @param callback Callback notified once the object has been processed, may be {@code null}
+	 */
+	public void add(T message, FlushCallback callback) {
+		if (!running) {
+			throw new IllegalStateException("Batch processing has been stopped");
+		}
+		if (startOnAdd && flushThread.getState() == Thread.State.NEW) {
+			start();
+		}
+		try {
+			if (!capacity.tryAcquire()) {
+				if (spill(List.of(message))) {
+					if (callback != null) {
+						callback.onFlushed();
+					}
+					return;
+				}
+				capacity.acquire();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for free space in the batch buffer", e);
+		}
+		long weight = weigher == null ? 0 : weigher.weigh(message);
+		while (true) {
+			Batch<T> batch = currentBatch.get();
+			if (weigher != null && !batch.isEmpty() && batch.weight.get() + weight > maxBatchWeight) {
+				seal(batch, FlushTrigger.WEIGHT);
+				continue;
+			}
+			int index = batch.claim();
+			if (index < batch.capacity()) {
+				batch.put(index, message, callback);
+				if (index == batch.capacity() - 1) {
+					seal(batch, FlushTrigger.SIZE);
+				} else if (weigher != null && batch.weight.addAndGet(weight) >= maxBatchWeight) {
+					seal(batch, FlushTrigger.WEIGHT);
+				}
+				return;
 			}
+			// the batch is full, the producer which took the last slot is swapping it right now
+			Thread.onSpinWait();
 		}
 	}
 
-	private void processAndSchedule() {
-		List<T> copyObjectList;
-		synchronized (this) {
-			copyObjectList = new ArrayList<>(this.objectList);
-			this.objectList.clear();
+	/**
+	 * Flushes everything buffered so far and stops the flush thread. If the caller is interrupted, the flush is not
+	 * awaited and the interrupted flag is kept.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		seal(currentBatch.get(), FlushTrigger.SHUTDOWN);
+		// wakes up the flush thread in case there was nothing to seal
+		sealedBatches.add(new Batch<>(0));
+		start();
+		try {
+			flushThread.join(SHUTDOWN_TIMEOUT);
+			if (flushLanes != null) {
+				for (ExecutorService lane : flushLanes) {
+					lane.shutdown();
+				}
+				for (ExecutorService lane : flushLanes) {
+					lane.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.warn("Interrupted while waiting for the flush of buffered objects");
 		}
+	}
+
+	/**
+	 * Key of the flush lane for the object, objects with equal keys are processed in the order they were added.
+	 * Used only when flush parallelism is greater than 1.
+	 *
+	 * @param object Buffered object
+	 * @return Partition key
+	 */
+	protected Object partitionKey(T object) {
+		return null;
+	}
 
-		if (!copyObjectList.isEmpty()) {
-			process(copyObjectList);
+	/**
+	 * Stores objects which can't be processed right now, to process them later some other way.
+	 *
+	 * @param objects Objects which don't fit into the buffer or which failed to be processed
+	 * @return {@code true} if objects are stored, {@code false} if they have to be kept in the buffer or reported as failed
+	 */
+	protected boolean spill(List<T> objects) {
+		return false;
+	}
+
+	/**
+	 * Objects of a failed batch which are spilled, the batch may have been processed partially.
+	 *
+	 * @param objects Objects of the batch
+	 * @param failure Failure of {@link #process(List)}
+	 * @return Objects which are not processed, all objects of the batch by default
+	 */
+	protected List<T> unprocessed(List<T> objects, Exception failure) {
+		return objects;
+	}
+
+	/**
+	 * Notified by the flush thread when a batch is taken for processing.
+	 *
+	 * @param trigger Reason of the flush
+	 * @param size    Amount of objects in the batch
+	 */
+	protected void onFlush(FlushTrigger trigger, int size) {
+	}
+
+	/**
+	 * @return Size of new batches
+	 */
+	public int getBatchSize() {
+		return controller == null ? batchSize : controller.getBatchSize();
+	}
+
+	/**
+	 * @return Max time a batch is filled, milliseconds
+	 */
+	public long getTimeout() {
+		return controller == null ? timeout : controller.getTimeout();
+	}
+
+	/**
+	 * @return Max amount of buffered and being processed objects
+	 */
+	public int getCapacity() {
+		return maxCapacity;
+	}
+
+	/**
+	 * @return Amount of buffered and being processed objects
+	 */
+	public int getBufferedCount() {
+		return maxCapacity - capacity.availablePermits();
+	}
+
+	/**
+	 * @return Amount of objects in the batch being filled
+	 */
+	public int getCurrentBatchCount() {
+		Batch<T> batch = currentBatch.get();
+		return Math.min(batch.claimed.get(), batch.capacity());
+	}
+
+	public int getFlushParallelism() {
+		return flushLanes == null ? 1 : flushLanes.length;
+	}
+
+	/**
+	 * @return Amount of lane batches queued or being processed, always 0 without parallel flush
+	 */
+	public int getInFlightBatches() {
+		return maxInFlightBatches - inFlightBatches.availablePermits();
+	}
+
+	private ExecutorService[] createFlushLanes(int flushParallelism) {
+		ExecutorService[] lanes = new ExecutorService[flushParallelism];
+		for (int i = 0; i < flushParallelism; i++) {
+			String name = getClass().getSimpleName() + "-flush-" + i;
+			lanes[i] = Executors.newSingleThreadExecutor(task -> {
+				Thread thread = new Thread(task, name);
+				thread.setDaemon(true);
+				return thread;
+			});
 		}
+		return lanes;
+	}
 
-		if (this.scheduledTask != null) {
-			this.scheduledTask.cancel(true);
+	private void seal(Batch<T> batch, FlushTrigger trigger) {
+		if (batch.isEmpty() || !currentBatch.compareAndSet(batch, new Batch<>(getBatchSize()))) {
+			return;
 		}
+		batch.seal(trigger);
+		if (controller != null) {
+			controller.onSealed(trigger, batch.size);
+		}
+		sealedBatches.add(batch);
+	}
 
-		this.scheduledTask = this.scheduler.schedule(this::processAndSchedule, getNextTime());
+	private void flushLoop() {
+		while (true) {
+			try {
+				Batch<T> batch = sealedBatches.poll(running ? getTimeout() : 0, TimeUnit.MILLISECONDS);
+				if (batch != null) {
+					flush(batch);
+				} else if (running || !currentBatch.get().isEmpty()) {
+					seal(currentBatch.get(), running ? FlushTrigger.TIMEOUT : FlushTrigger.SHUTDOWN);
+				} else {
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				// the only flush thread must survive, otherwise the buffer is never released
+				LOGGER.error("Unable to flush a batch", e);
+			}
+		}
+	}
+
+	private void flush(Batch<T> batch) throws InterruptedException {
+		Chunk<T> chunk = batch.awaitChunk();
+		if (chunk.isEmpty()) {
+			return;
+		}
+		try {
+			onFlush(batch.trigger, chunk.items.size());
+		} catch (RuntimeException e) {
+			LOGGER.warn("Flush listener has failed", e);
+		}
+		if (flushLanes == null) {
+			processAndRelease(chunk);
+			return;
+		}
+		List<Chunk<T>> partitions = partition(chunk);
+		for (int lane = 0; lane < flushLanes.length; lane++) {
+			Chunk<T> partition = partitions.get(lane);
+			if (!partition.isEmpty()) {
+				inFlightBatches.acquire();
+				try {
+					flushLanes[lane].execute(() -> {
+						try {
+							processAndRelease(partition);
+						} finally {
+							inFlightBatches.release();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// lanes are shut down only after the flush thread stops, still the buffer has to be released
+					inFlightBatches.release();
+					processAndRelease(partition);
+				}
+			}
+		}
+	}
+
+	private List<Chunk<T>> partition(Chunk<T> chunk) {
+		List<Chunk<T>> partitions = new ArrayList<>(flushLanes.length);
+		for (int i = 0; i < flushLanes.length; i++) {
+			partitions.add(new Chunk<>(new ArrayList<>(), new ArrayList<>()));
+		}
+		for (int i = 0; i < chunk.items.size(); i++) {
+			T object = chunk.items.get(i);
+			partitions.get(Math.floorMod(Objects.hashCode(partitionKey(object)), flushLanes.length)).add(object, chunk.callbacks.get(i));
+		}
+		return partitions;
+	}
+
+	private void processAndRelease(Chunk<T> chunk) {
+		try {
+			process(new ArrayList<>(chunk.items));
+			chunk.complete(null);
+		} catch (Exception e) {
+			List<T> unprocessed = unprocessed(chunk.items, e);
+			if (unprocessed.isEmpty() || spill(unprocessed)) {
+				LOGGER.warn("Unable to process {} of {} objects of a batch, they are spilled", unprocessed.size(), chunk.items.size(), e);
+				chunk.complete(null);
+			} else {
+				LOGGER.error("Unable to process batch of {} objects", chunk.items.size(), e);
+				chunk.complete(e);
+			}
+		} finally {
+			capacity.release(chunk.items.size());
+		}
 	}
 
 	protected abstract void process(List<T> objectList);
+
+	/**
+	 * Fixed size batch, filled concurrently by producers.
+	 * Slots are claimed by {@link #claim()}, so every producer writes its own slot, and counted as published
+	 * after the write, so the flush thread knows when all claimed slots are filled.
+	 */
+	private static final class Batch<T> {
+
+		// added to claimed counter on seal, so that late producers get an out of range index and retry on the next batch
+		private static final int SEALED = 1 << 30;
+
+		private final Object[] items;
+		private final FlushCallback[] callbacks;
+		private final AtomicInteger claimed = new AtomicInteger();
+		private final AtomicInteger published = new AtomicInteger();
+		private final AtomicLong weight = new AtomicLong();
+		private int size;
+		private FlushTrigger trigger;
+
+		private Batch(int batchSize) {
+			this.items = new Object[batchSize];
+			this.callbacks = new FlushCallback[batchSize];
+		}
+
+		private int claim() {
+			return claimed.getAndIncrement();
+		}
+
+		private void put(int index, T item, FlushCallback callback) {
+			items[index] = item;
+			callbacks[index] = callback;
+			published.incrementAndGet();
+		}
+
+		private int capacity() {
+			return items.length;
+		}
+
+		private boolean isEmpty() {
+			return claimed.get() == 0;
+		}
+
+		private void seal(FlushTrigger trigger) {
+			this.size = Math.min(claimed.getAndAdd(SEALED), items.length);
+			this.trigger = trigger;
+		}
+
+		@SuppressWarnings("unchecked")
+		private Chunk<T> awaitChunk() {
+			while (published.get() < size) {
+				Thread.onSpinWait();
+			}
+			return new Chunk<>((List<T>) Arrays.asList(items).subList(0, size), Arrays.asList(callbacks).subList(0, size));
+		}
+	}
+
+	/**
+	 * Objects processed together, with their callbacks at the same positions.
+	 */
+	private static final class Chunk<T> {
+
+		private final List<T> items;
+		private final List<FlushCallback> callbacks;
+
+		private Chunk(List<T> items, List<FlushCallback> callbacks) {
+			this.items = items;
+			this.callbacks = callbacks;
+		}
+
+		private void add(T item, FlushCallback callback) {
+			items.add(item);
+			callbacks.add(callback);
+		}
+
+		private boolean isEmpty() {
+			return items.isEmpty();
+		}
+
+		private void complete(Exception failure) {
+			for (FlushCallback callback : callbacks) {
+				if (callback == null) {
+					continue;
+				}
+				try {
+					if (failure == null) {
+						callback.onFlushed();
+					} else {
+						callback.onFailed(failure);
+					}
+				} catch (Exception e) {
+					LOGGER.warn("Flush callback has failed", e);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,19 @@
+package com.epam.reportportal.calculation;
+
+/**
+ * Notified once the object added to {@link BatchProcessing} has been processed.
+ */
+public interface FlushCallback {
+
+	/**
+	 * Called after the batch with the object has been processed successfully.
+	 */
+	void onFlushed();
+
+	/**
+	 * Called if processing of the batch with the object has failed.
+	 *
+	 * @param e Cause of the failure
+	 */
+	void onFailed(Exception e);
+}
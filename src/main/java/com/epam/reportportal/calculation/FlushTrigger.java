@@ -0,0 +1,23 @@
+package com.epam.reportportal.calculation;
+
+/**
+ * Reason of a batch flush.
+ */
+public enum FlushTrigger {
+	/**
+	 * The batch is full
+	 */
+	SIZE,
+	/**
+	 * The batch has reached its max weight
+	 */
+	WEIGHT,
+	/**
+	 * The batch hasn't been filled in time
+	 */
+	TIMEOUT,
+	/**
+	 * Batch processing is being closed
+	 */
+	SHUTDOWN
+}
@@ -2,7 +2,6 @@ package com.epam.reportportal.calculation;
 
 
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.scheduling.concurrent.DefaultManagedTaskScheduler;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -11,7 +10,8 @@ public class RetryCalculation {
     private final RetryProcessing retryProcessing;
 
     public RetryCalculation() {
-         retryProcessing = new RetryProcessing(5, 3000, new DefaultManagedTaskScheduler());
+         retryProcessing = new RetryProcessing(5, 3000, 50);
+         retryProcessing.start();
     }
 
     /* example of using fill be removed during integration
@@ -14,6 +14,10 @@ public class RetryProcessing extends BatchProcessing<Object> {
         super(batchSize, timeout, scheduler);
     }
 
+    public RetryProcessing(int batchSize, long timeout, int bufferSize) {
+        super(batchSize, timeout, bufferSize);
+    }
+
     @Override
     protected void process(List<Object> objectList) {
         if (CollectionUtils.isEmpty(objectList)) {
@@ -0,0 +1,16 @@
+package com.epam.reportportal.calculation;
+
+/**
+ * Weight of an object buffered by {@link BatchProcessing}, like its serialized size.
+ *
+ * @param <T> Type of weighed objects
+ */
+@FunctionalInterface
+public interface Weigher<T> {
+
+	/**
+	 * @param object Object to weigh
+	 * @return Weight of the object, not negative
+	 */
+	long weigh(T object);
+}
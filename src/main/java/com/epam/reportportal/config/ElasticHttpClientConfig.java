@@ -0,0 +1,65 @@
+package com.epam.reportportal.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled keep-alive HTTP transport of the Elasticsearch log client.
+ */
+@Configuration
+public class ElasticHttpClientConfig {
+
+	private static final String POOL_NAME = "elasticsearch";
+
+	@Bean(destroyMethod = "close")
+	public PoolingHttpClientConnectionManager elasticConnectionManager(@Value("${rp.elasticsearch.http.maxConnections}") int maxConnections,
+			@Value("${rp.elasticsearch.http.maxConnectionsPerRoute}") int maxConnectionsPerRoute) {
+		final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		return connectionManager;
+	}
+
+	@Bean(destroyMethod = "close")
+	public CloseableHttpClient elasticHttpClient(@Qualifier("elasticConnectionManager") PoolingHttpClientConnectionManager connectionManager,
+			@Value("${rp.elasticsearch.http.connectTimeout}") int connectTimeout,
+			@Value("${rp.elasticsearch.http.readTimeout}") int readTimeout,
+			@Value("${rp.elasticsearch.http.maxIdleTime}") long maxIdleTime) {
+		final RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setConnectionRequestTimeout(connectTimeout)
+				.setSocketTimeout(readTimeout)
+				.build();
+		return HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.evictExpiredConnections()
+				.evictIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS)
+				.build();
+	}
+
+	@Bean
+	public ClientHttpRequestFactory elasticRequestFactory(@Qualifier("elasticHttpClient") CloseableHttpClient httpClient) {
+		final HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+		// request bodies are streamed from the bulk buffer
+		requestFactory.setBufferRequestBody(false);
+		return requestFactory;
+	}
+
+	@Bean
+	public MeterBinder elasticConnectionPoolMetrics(@Qualifier("elasticConnectionManager") PoolingHttpClientConnectionManager connectionManager) {
+		return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME);
+	}
+}
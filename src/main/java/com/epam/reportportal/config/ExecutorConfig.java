@@ -22,4 +22,29 @@ public class ExecutorConfig {
 		threadPoolTaskExecutor.setThreadNamePrefix("prj-alloc-storage");
 		return threadPoolTaskExecutor;
 	}
+
+	/**
+	 * Every project cleanup holds a database connection, so the pool size has to stay well below the datasource pool size.
+	 */
+	@Bean
+	public TaskExecutor projectCleanupExecutor(@Value("${rp.environment.variable.executor.pool.clean.project.core}") Integer corePoolSize,
+			@Value("${rp.environment.variable.executor.pool.clean.project.max}") Integer maxPoolSize) {
+		final ThreadPoolTaskExecutor threadPoolTaskExecutor = new ThreadPoolTaskExecutor();
+		threadPoolTaskExecutor.setCorePoolSize(corePoolSize);
+		threadPoolTaskExecutor.setMaxPoolSize(maxPoolSize);
+		threadPoolTaskExecutor.setAllowCoreThreadTimeOut(true);
+		threadPoolTaskExecutor.setThreadNamePrefix("prj-clean");
+		return threadPoolTaskExecutor;
+	}
+
+	@Bean
+	public TaskExecutor storageCleanupExecutor(@Value("${rp.environment.variable.executor.pool.clean.storage.core}") Integer corePoolSize,
+			@Value("${rp.environment.variable.executor.pool.clean.storage.max}") Integer maxPoolSize) {
+		final ThreadPoolTaskExecutor threadPoolTaskExecutor = new ThreadPoolTaskExecutor();
+		threadPoolTaskExecutor.setCorePoolSize(corePoolSize);
+		threadPoolTaskExecutor.setMaxPoolSize(maxPoolSize);
+		threadPoolTaskExecutor.setAllowCoreThreadTimeOut(true);
+		threadPoolTaskExecutor.setThreadNamePrefix("storage-clean");
+		return threadPoolTaskExecutor;
+	}
 }
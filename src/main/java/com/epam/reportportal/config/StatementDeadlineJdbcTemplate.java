@@ -0,0 +1,60 @@
+package com.epam.reportportal.config;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jdbc template which bounds the query timeout of every statement by the deadline of the current thread, if any. The
+ * driver cancels a statement which exceeds it, and a statement after the deadline fails without being executed.
+ */
+public class StatementDeadlineJdbcTemplate extends JdbcTemplate {
+
+	private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+	public StatementDeadlineJdbcTemplate(DataSource dataSource) {
+		super(dataSource);
+	}
+
+	/**
+	 * Runs a task with statements of the current thread bounded by the deadline.
+	 *
+	 * @param deadline Epoch milliseconds
+	 */
+	public static <T> T withDeadline(long deadline, Callable<T> task) throws Exception {
+		final Long previous = DEADLINE.get();
+		DEADLINE.set(previous == null ? deadline : Math.min(previous, deadline));
+		try {
+			return task.call();
+		} finally {
+			if (previous == null) {
+				DEADLINE.remove();
+			} else {
+				DEADLINE.set(previous);
+			}
+		}
+	}
+
+	@Override
+	protected void applyStatementSettings(Statement stmt) throws SQLException {
+		super.applyStatementSettings(stmt);
+		final Long deadline = DEADLINE.get();
+		if (deadline == null) {
+			return;
+		}
+		final long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0) {
+			throw new SQLTimeoutException("Deadline of the statement has passed");
+		}
+		// query timeout has a granularity of seconds
+		final int seconds = (int) Math.min(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toSeconds(remaining + 999));
+		if (stmt.getQueryTimeout() == 0 || seconds < stmt.getQueryTimeout()) {
+			stmt.setQueryTimeout(seconds);
+		}
+	}
+}
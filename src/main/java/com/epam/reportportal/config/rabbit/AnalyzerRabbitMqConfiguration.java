@@ -69,6 +69,8 @@ public class AnalyzerRabbitMqConfiguration {
 			@Value("${rp.amqp.analyzer-vhost}") String virtualHost) {
 		CachingConnectionFactory factory = new CachingConnectionFactory(addresses);
 		factory.setVirtualHost(virtualHost);
+		// index removals are published with confirms
+		factory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.SIMPLE);
 		return factory;
 	}
 
@@ -16,6 +16,7 @@
 
 package com.epam.reportportal.config.rabbit;
 
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
@@ -45,14 +46,25 @@ public class ProcessingRabbitMqConfiguration {
 		return factory;
 	}
 
+	/**
+	 * Batch listener factory, messages are acknowledged manually once they are processed.
+	 */
 	@Bean
 	public SimpleRabbitListenerContainerFactory processingRabbitListenerContainerFactory(
 			@Qualifier("processingConnectionFactory") ConnectionFactory connectionFactory, MessageConverter jsonMessageConverter,
-			@Value("${rp.amqp.maxLogConsumer}") int maxLogConsumer) {
+			@Value("${rp.amqp.maxLogConsumer}") int maxLogConsumer, @Value("${rp.amqp.logBatchSize}") int logBatchSize,
+			@Value("${rp.amqp.logBatchReceiveTimeout}") long logBatchReceiveTimeout,
+			@Value("${rp.amqp.logPrefetchCount}") int logPrefetchCount) {
 		SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
 		factory.setConnectionFactory(connectionFactory);
 		factory.setMaxConcurrentConsumers(maxLogConsumer);
 		factory.setMessageConverter(jsonMessageConverter);
+		factory.setBatchListener(true);
+		factory.setConsumerBatchEnabled(true);
+		factory.setBatchSize(logBatchSize);
+		factory.setReceiveTimeout(logBatchReceiveTimeout);
+		factory.setPrefetchCount(Math.max(logPrefetchCount, logBatchSize));
+		factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
 		return factory;
 	}
 
@@ -0,0 +1,54 @@
+package com.epam.reportportal.elastic;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer for a bulk request body. Unlike {@link java.io.ByteArrayOutputStream} it is not synchronized
+ * and is written to the request stream as is, without copying.
+ */
+public class BulkBody extends OutputStream {
+
+    private byte[] buffer;
+    private int count;
+
+    BulkBody(int initialSize) {
+        this.buffer = new byte[initialSize];
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(count + length);
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, count);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    void reset() {
+        count = 0;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, minCapacity));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.epam.reportportal.elastic;
+
+import com.epam.reportportal.log.LogMessage;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Serializes log messages straight into a reusable per-thread buffer in the NDJSON format of the bulk API.
+ * The returned {@link BulkBody} is valid until the next call of the writer on the same thread.
+ */
+public class BulkBodyWriter {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    // bigger buffers are not kept between requests, so a single huge batch doesn't pin the memory
+    private static final int MAX_RETAINED_BUFFER_SIZE = 16 * 1024 * 1024;
+
+    private static final SerializableString CREATE_ACTION = new SerializedString("{\"create\":{}}\n");
+    private static final SerializableString CREATE = new SerializedString("create");
+    private static final SerializableString INDEX = new SerializedString("_index");
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString MESSAGE = new SerializedString("message");
+    private static final SerializableString ITEM_ID = new SerializedString("itemId");
+    private static final SerializableString TIMESTAMP = new SerializedString("@timestamp");
+
+    // action with the index name and the document without the message, with the longest ids and timestamp
+    private static final int MAX_ENVELOPE_SIZE = 256;
+
+    private final JsonFactory jsonFactory = new JsonFactory().setRootValueSeparator(null);
+    private final ThreadLocal<BulkBody> buffers = ThreadLocal.withInitial(() -> new BulkBody(INITIAL_BUFFER_SIZE));
+    private final ThreadLocal<char[]> timestampBuffers = ThreadLocal.withInitial(() -> new char[29]);
+
+    /**
+     * Writes a create action and a document for every log message.
+     *
+     * @param logMessages Log messages of the same index
+     * @return Bulk request body
+     */
+    public BulkBody write(Collection<LogMessage> logMessages) {
+        BulkBody body = acquireBuffer();
+        try (JsonGenerator generator = jsonFactory.createGenerator(body, JsonEncoding.UTF8)) {
+            for (LogMessage logMessage : logMessages) {
+                generator.writeRaw(CREATE_ACTION);
+                writeDocument(generator, logMessage);
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body;
+    }
+
+    /**
+     * Writes a create action with the target index and a document for every log message,
+     * so logs of different indices can be sent in a single request.
+     *
+     * @param logMessages Log messages
+     * @return Bulk request body
+     */
+    public BulkBody writeWithIndex(Collection<LogMessage> logMessages) {
+        BulkBody body = acquireBuffer();
+        try (JsonGenerator generator = jsonFactory.createGenerator(body, JsonEncoding.UTF8)) {
+            for (LogMessage logMessage : logMessages) {
+                generator.writeStartObject();
+                generator.writeFieldName(CREATE);
+                generator.writeStartObject();
+                generator.writeFieldName(INDEX);
+                generator.writeString(SimpleElasticSearchClient.getIndexName(logMessage));
+                generator.writeEndObject();
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                writeDocument(generator, logMessage);
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body;
+    }
+
+    /**
+     * Writes a single document.
+     *
+     * @param logMessage Log message
+     * @return Document body
+     */
+    public BulkBody write(LogMessage logMessage) {
+        BulkBody body = acquireBuffer();
+        try (JsonGenerator generator = jsonFactory.createGenerator(body, JsonEncoding.UTF8)) {
+            writeDocument(generator, logMessage);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body;
+    }
+
+    /**
+     * Estimates the size of a log in a bulk request body without serializing it. The estimate is exact for the message,
+     * and an upper bound for the rest.
+     *
+     * @param logMessage Log message
+     * @return Size in bytes
+     */
+    public static long estimateSize(LogMessage logMessage) {
+        return MAX_ENVELOPE_SIZE + estimateSize(logMessage.getLogMessage());
+    }
+
+    /**
+     * @param value String to write
+     * @return Size of the string as an escaped JSON string value in UTF-8, without quotes
+     */
+    public static long estimateSize(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long size = 0;
+        for (int i = 0; i < value.length(); i++) {
+            size += estimateSize(value.charAt(i));
+        }
+        return size;
+    }
+
+    /**
+     * @param c Character of a string to write
+     * @return Size of the character as a part of an escaped JSON string value in UTF-8
+     */
+    public static int estimateSize(char c) {
+        if (c == '"' || c == '\\' || c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f') {
+            return 2;
+        } else if (c < 0x20 || Character.isSurrogate(c)) {
+            // the generator escapes both halves of a surrogate pair
+            return 6;
+        } else if (c < 0x80) {
+            return 1;
+        } else if (c < 0x800) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private BulkBody acquireBuffer() {
+        BulkBody body = buffers.get();
+        if (body.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            body = new BulkBody(INITIAL_BUFFER_SIZE);
+            buffers.set(body);
+        }
+        body.reset();
+        return body;
+    }
+
+    private void writeDocument(JsonGenerator generator, LogMessage logMessage) throws IOException {
+        generator.writeStartObject();
+        if (logMessage.getId() != null) {
+            generator.writeFieldName(ID);
+            generator.writeNumber(logMessage.getId());
+        }
+        if (logMessage.getLogMessage() != null) {
+            generator.writeFieldName(MESSAGE);
+            generator.writeString(logMessage.getLogMessage());
+        }
+        if (logMessage.getItemId() != null) {
+            generator.writeFieldName(ITEM_ID);
+            generator.writeNumber(logMessage.getItemId());
+        }
+        if (logMessage.getLogTime() != null) {
+            generator.writeFieldName(TIMESTAMP);
+            writeTimestamp(generator, logMessage.getLogTime());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes the timestamp in the {@link LocalDateTime#toString()} format without creating a string.
+     */
+    private void writeTimestamp(JsonGenerator generator, LocalDateTime time) throws IOException {
+        int year = time.getYear();
+        if (year < 0 || year > 9999) {
+            generator.writeString(time.toString());
+            return;
+        }
+        char[] chars = timestampBuffers.get();
+        int length = 0;
+        length = writeDigits(chars, length, year, 4);
+        chars[length++] = '-';
+        length = writeDigits(chars, length, time.getMonthValue(), 2);
+        chars[length++] = '-';
+        length = writeDigits(chars, length, time.getDayOfMonth(), 2);
+        chars[length++] = 'T';
+        length = writeDigits(chars, length, time.getHour(), 2);
+        chars[length++] = ':';
+        length = writeDigits(chars, length, time.getMinute(), 2);
+        int second = time.getSecond();
+        int nano = time.getNano();
+        if (second > 0 || nano > 0) {
+            chars[length++] = ':';
+            length = writeDigits(chars, length, second, 2);
+            if (nano > 0) {
+                chars[length++] = '.';
+                if (nano % 1_000_000 == 0) {
+                    length = writeDigits(chars, length, nano / 1_000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    length = writeDigits(chars, length, nano / 1000, 6);
+                } else {
+                    length = writeDigits(chars, length, nano, 9);
+                }
+            }
+        }
+        generator.writeString(chars, 0, length);
+    }
+
+    private static int writeDigits(char[] chars, int offset, int value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+}
@@ -0,0 +1,54 @@
+package com.epam.reportportal.elastic;
+
+import com.epam.reportportal.log.LogMessage;
+
+import java.util.List;
+
+/**
+ * Thrown when some logs were not indexed, either rejected or never sent because of a failed request.
+ * All other logs of the call are indexed.
+ */
+public class BulkIndexingException extends RuntimeException {
+
+    private final transient List<LogMessage> failedLogs;
+    private final transient List<LogMessage> permanentlyRejectedLogs;
+
+    public BulkIndexingException(String message, List<LogMessage> failedLogs) {
+        this(message, failedLogs, List.of());
+    }
+
+    /**
+     * @param failedLogs              Logs which were not indexed
+     * @param permanentlyRejectedLogs Part of failed logs rejected for a reason which retries don't fix, e.g. a mapping error
+     */
+    public BulkIndexingException(String message, List<LogMessage> failedLogs, List<LogMessage> permanentlyRejectedLogs) {
+        super(message);
+        this.failedLogs = failedLogs;
+        this.permanentlyRejectedLogs = permanentlyRejectedLogs;
+    }
+
+    public BulkIndexingException(String message, List<LogMessage> failedLogs, Throwable cause) {
+        this(message, failedLogs, List.of(), cause);
+    }
+
+    public BulkIndexingException(String message, List<LogMessage> failedLogs, List<LogMessage> permanentlyRejectedLogs,
+                                 Throwable cause) {
+        super(message, cause);
+        this.failedLogs = failedLogs;
+        this.permanentlyRejectedLogs = permanentlyRejectedLogs;
+    }
+
+    /**
+     * @return Logs which were not indexed
+     */
+    public List<LogMessage> getFailedLogs() {
+        return failedLogs;
+    }
+
+    /**
+     * @return Failed logs which were rejected for a reason which retries don't fix
+     */
+    public List<LogMessage> getPermanentlyRejectedLogs() {
+        return permanentlyRejectedLogs;
+    }
+}
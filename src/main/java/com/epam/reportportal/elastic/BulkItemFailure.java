@@ -0,0 +1,47 @@
+package com.epam.reportportal.elastic;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Failed item of a bulk request.
+ */
+public class BulkItemFailure {
+
+    private final int position;
+    private final int status;
+    private final String index;
+    private final String reason;
+
+    public BulkItemFailure(int position, int status, String index, String reason) {
+        this.position = position;
+        this.status = status;
+        this.index = index;
+        this.reason = reason;
+    }
+
+    /**
+     * @return Position of the item in the bulk request
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Rejections because of a full queue or an unavailable shard go away by themselves, unlike mapping errors.
+     */
+    public boolean isRetryable() {
+        return status == HttpStatus.TOO_MANY_REQUESTS.value() || status >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+}
@@ -0,0 +1,97 @@
+package com.epam.reportportal.elastic;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads failed items from a bulk response. The response is streamed, and items are not read at all
+ * when the response reports no errors.
+ */
+public class BulkResponseReader implements ResponseExtractor<List<BulkItemFailure>> {
+
+    private static final String ERRORS = "errors";
+    private static final String ITEMS = "items";
+    private static final String STATUS = "status";
+    private static final String INDEX = "_index";
+    private static final String ERROR = "error";
+    private static final String TYPE = "type";
+    private static final String REASON = "reason";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Override
+    public List<BulkItemFailure> extractData(ClientHttpResponse response) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(response.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected bulk response format");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (ERRORS.equals(field) && !parser.getBooleanValue()) {
+                    return Collections.emptyList();
+                } else if (ITEMS.equals(field)) {
+                    return readItems(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return Collections.emptyList();
+        }
+    }
+
+    private List<BulkItemFailure> readItems(JsonParser parser) throws IOException {
+        List<BulkItemFailure> failures = new ArrayList<>();
+        int position = 0;
+        // every item is an object with a single field named by the action
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            parser.nextToken();
+            parser.nextToken();
+            BulkItemFailure failure = readItem(parser, position++);
+            if (failure != null) {
+                failures.add(failure);
+            }
+            parser.nextToken();
+        }
+        return failures;
+    }
+
+    private BulkItemFailure readItem(JsonParser parser, int position) throws IOException {
+        int status = 0;
+        String index = null;
+        String type = null;
+        String reason = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (STATUS.equals(field)) {
+                status = parser.getIntValue();
+            } else if (INDEX.equals(field)) {
+                index = parser.getText();
+            } else if (ERROR.equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String errorField = parser.getCurrentName();
+                    parser.nextToken();
+                    if (TYPE.equals(errorField)) {
+                        type = parser.getText();
+                    } else if (REASON.equals(errorField)) {
+                        reason = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return status >= 300 ? new BulkItemFailure(position, status, index, type + ": " + reason) : null;
+    }
+}
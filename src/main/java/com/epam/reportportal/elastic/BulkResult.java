@@ -0,0 +1,38 @@
+package com.epam.reportportal.elastic;
+
+/**
+ * Summary of the bulk requests made to save a list of logs.
+ */
+public class BulkResult {
+
+    private long payloadSize;
+    private int requests;
+    private int throttledItems;
+
+    void addRequest(long payloadSize) {
+        this.payloadSize += payloadSize;
+        this.requests++;
+    }
+
+    void addThrottledItem() {
+        throttledItems++;
+    }
+
+    /**
+     * @return Total uncompressed size of request bodies, bytes, including retries
+     */
+    public long getPayloadSize() {
+        return payloadSize;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return Amount of items rejected with 429 status, including retried ones
+     */
+    public int getThrottledItems() {
+        return throttledItems;
+    }
+}
@@ -0,0 +1,33 @@
+package com.epam.reportportal.elastic;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Coalesced refresh of log indices, bounds search freshness of logs saved without immediate refresh
+ * with a single refresh per interval instead of a refresh per bulk request.
+ */
+@Service
+@ConditionalOnExpression("${rp.elasticsearch.refresh.interval:0} > 0")
+public class IndexRefreshScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexRefreshScheduler.class);
+
+    private final SimpleElasticSearchClient simpleElasticSearchClient;
+
+    public IndexRefreshScheduler(SimpleElasticSearchClient simpleElasticSearchClient) {
+        this.simpleElasticSearchClient = simpleElasticSearchClient;
+    }
+
+    @Scheduled(fixedDelayString = "${rp.elasticsearch.refresh.interval}")
+    public void refresh() {
+        try {
+            simpleElasticSearchClient.refreshWrittenIndices();
+        } catch (Exception e) {
+            LOGGER.warn("Unable to refresh log indices", e);
+        }
+    }
+}
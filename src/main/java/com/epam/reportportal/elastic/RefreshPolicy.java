@@ -0,0 +1,32 @@
+package com.epam.reportportal.elastic;
+
+/**
+ * Refresh of indices after a bulk request, ordered from the cheapest to the strongest.
+ */
+public enum RefreshPolicy {
+
+    /**
+     * Documents become searchable with the next scheduled refresh.
+     */
+    NONE(""),
+
+    /**
+     * The request waits until the next scheduled refresh makes documents searchable.
+     */
+    WAIT_FOR("?refresh=wait_for"),
+
+    /**
+     * Affected shards are refreshed right after the request.
+     */
+    IMMEDIATE("?refresh");
+
+    private final String queryString;
+
+    RefreshPolicy(String queryString) {
+        this.queryString = queryString;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+}
@@ -0,0 +1,72 @@
+package com.epam.reportportal.elastic;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.PatternMatchUtils;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Refresh settings of log indices.
+ */
+@Component
+@ConfigurationProperties(prefix = "rp.elasticsearch.refresh")
+public class RefreshProperties {
+
+    private RefreshPolicy policy = RefreshPolicy.IMMEDIATE;
+
+    /**
+     * Policies by index name pattern, like {@code logs-reportportal-1-*}, the first matching pattern wins.
+     */
+    private Map<String, RefreshPolicy> patterns = new LinkedHashMap<>();
+
+    /**
+     * Interval of the coalesced refresh of indices written without immediate refresh, milliseconds. 0 disables it.
+     */
+    private long interval;
+
+    public RefreshPolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(RefreshPolicy policy) {
+        this.policy = policy;
+    }
+
+    public Map<String, RefreshPolicy> getPatterns() {
+        return patterns;
+    }
+
+    public void setPatterns(Map<String, RefreshPolicy> patterns) {
+        this.patterns = patterns;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    public RefreshPolicy resolve(String indexName) {
+        return patterns.entrySet()
+                .stream()
+                .filter(entry -> PatternMatchUtils.simpleMatch(entry.getKey(), indexName))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(policy);
+    }
+
+    /**
+     * @return The strongest policy of the indices, as a bulk request can have a single one
+     */
+    public RefreshPolicy resolve(Collection<String> indexNames) {
+        if (patterns.isEmpty()) {
+            return policy;
+        }
+        return indexNames.stream().map(this::resolve).max(Enum::compareTo).orElse(policy);
+    }
+}
@@ -1,19 +1,37 @@
 package com.epam.reportportal.elastic;
 
 import com.epam.reportportal.log.LogMessage;
-import org.json.JSONObject;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.client.RequestCallback;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Simple client to work with Elasticsearch.
@@ -21,65 +39,258 @@ import java.util.Map;
  */
 @Service
 public class SimpleElasticSearchClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SimpleElasticSearchClient.class);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int REFRESH_INDICES_PER_REQUEST = 50;
+    private static final int GZIP_BUFFER_SIZE = 8 * 1024;
+
     private final String host;
+    private final String authorization;
     private final RestTemplate restTemplate;
+    private final boolean compression;
+    private final BulkBodyWriter bulkBodyWriter = new BulkBodyWriter();
+    private final BulkResponseReader bulkResponseReader = new BulkResponseReader();
+    private final boolean multiIndexBulk;
+    private final int maxRetries;
+    private final long retryBackoff;
+    private final RefreshProperties refreshProperties;
+    private final Set<String> indicesToRefresh = ConcurrentHashMap.newKeySet();
+    private final MeterRegistry meterRegistry;
+    private final Timer bulkLatency;
+    private final DistributionSummary bulkBytes;
 
-    public SimpleElasticSearchClient(@Value("${rp.elasticsearch.host}") String host,
+    public SimpleElasticSearchClient(@Qualifier("elasticRequestFactory") ClientHttpRequestFactory requestFactory,
+                                     @Value("${rp.elasticsearch.host}") String host,
                                      @Value("${rp.elasticsearch.username}") String username,
-                                     @Value("${rp.elasticsearch.password}") String password) {
-        restTemplate = new RestTemplate();
-        restTemplate.getInterceptors().add(new BasicAuthenticationInterceptor(username, password));
+                                     @Value("${rp.elasticsearch.password}") String password,
+                                     @Value("${rp.elasticsearch.bulk.multiIndex}") boolean multiIndexBulk,
+                                     @Value("${rp.elasticsearch.bulk.maxRetries}") int maxRetries,
+                                     @Value("${rp.elasticsearch.bulk.retryBackoff}") long retryBackoff,
+                                     @Value("${rp.elasticsearch.http.compression}") boolean compression,
+                                     RefreshProperties refreshProperties,
+                                     MeterRegistry meterRegistry) {
+        // request bodies are streamed from the bulk buffer, an interceptor would make the template buffer them again
+        restTemplate = new RestTemplate(requestFactory);
+        authorization = "Basic " + HttpHeaders.encodeBasicAuth(username, password, StandardCharsets.ISO_8859_1);
 
         this.host = host;
+        this.multiIndexBulk = multiIndexBulk;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.compression = compression;
+        this.refreshProperties = refreshProperties;
+        this.meterRegistry = meterRegistry;
+
+        bulkLatency = Timer.builder("elasticsearch.bulk.latency")
+                .description("Bulk request round trip, including response parsing")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        bulkBytes = DistributionSummary.builder("elasticsearch.bulk.bytes")
+                .description("Uncompressed bulk request body size")
+                .baseUnit("bytes")
+                .register(meterRegistry);
     }
 
-    public void save(LogMessage logMessage) {
-        Long launchId = logMessage.getLaunchId();
-        String indexName = "logs-reportportal-" + logMessage.getProjectId() + "-" + launchId;
+    public static String getIndexName(LogMessage logMessage) {
+        return "logs-reportportal-" + logMessage.getProjectId() + "-" + logMessage.getLaunchId();
+    }
 
-        JSONObject personJsonObject = convertToJson(logMessage);
+    public void save(LogMessage logMessage) {
+        String indexName = getIndexName(logMessage);
+        BulkBody body = bulkBodyWriter.write(logMessage);
+        restTemplate.execute(host + "/" + indexName + "/_doc", HttpMethod.POST, writeBody(body, MediaType.APPLICATION_JSON), null);
+    }
 
-        HttpEntity<String> request = getStringHttpEntity(personJsonObject.toString());
+    /**
+     * Saves logs with bulk requests, items rejected for a temporary reason are retried individually.
+     * Rejections of one index don't stop the logs of other indices from being saved, a failed request stops the save.
+     *
+     * @param logMessageList Logs to save
+     * @return Summary of the sent requests
+     * @throws BulkIndexingException with all logs which were not indexed: rejected for a permanent reason, e.g. a mapping
+     *                               error, rejected after all retries or never sent
+     */
+    public BulkResult save(List<LogMessage> logMessageList) {
+        BulkResult result = new BulkResult();
+        if (CollectionUtils.isEmpty(logMessageList)) return result;
 
-        restTemplate.postForObject(host + "/" + indexName + "/_doc", request, String.class);
+        List<LogMessage> rejected = new ArrayList<>();
+        List<LogMessage> permanentlyRejected = new ArrayList<>();
+        if (multiIndexBulk) {
+            rejected.addAll(bulk(null, logMessageList, result, permanentlyRejected));
+        } else {
+            Map<String, List<LogMessage>> logsByIndex = new LinkedHashMap<>();
+            logMessageList.forEach(logMessage -> logsByIndex.computeIfAbsent(getIndexName(logMessage), indexName -> new ArrayList<>())
+                    .add(logMessage));
+            List<Map.Entry<String, List<LogMessage>>> indices = new ArrayList<>(logsByIndex.entrySet());
+            for (int i = 0; i < indices.size(); i++) {
+                try {
+                    rejected.addAll(bulk(indices.get(i).getKey(), indices.get(i).getValue(), result, permanentlyRejected));
+                } catch (BulkIndexingException e) {
+                    // logs of the indices after the failed one are never sent
+                    List<LogMessage> notIndexed = new ArrayList<>(rejected);
+                    notIndexed.addAll(e.getFailedLogs());
+                    indices.subList(i + 1, indices.size()).forEach(index -> notIndexed.addAll(index.getValue()));
+                    throw new BulkIndexingException(String.format("%d logs were not indexed", notIndexed.size()),
+                            notIndexed, permanentlyRejected, e.getCause());
+                }
+            }
+        }
+        if (!rejected.isEmpty()) {
+            throw new BulkIndexingException(String.format("%d logs were rejected, %d of them permanently",
+                    rejected.size(), permanentlyRejected.size()), rejected, permanentlyRejected);
+        }
+        return result;
     }
 
-    public void save(List<LogMessage> logMessageList) {
-        if (CollectionUtils.isEmpty(logMessageList)) return;
-        Map<String, String> logsByIndex = new HashMap<>();
-
-        String create = "{\"create\":{ }}\n";
+    /**
+     * Refreshes indices written since the previous call without immediate refresh.
+     */
+    public void refreshWrittenIndices() {
+        if (indicesToRefresh.isEmpty()) {
+            return;
+        }
+        List<String> indices = new ArrayList<>(indicesToRefresh);
+        indicesToRefresh.removeAll(indices);
+        for (int from = 0; from < indices.size(); from += REFRESH_INDICES_PER_REQUEST) {
+            String indexNames = String.join(",", indices.subList(from, Math.min(from + REFRESH_INDICES_PER_REQUEST, indices.size())));
+            restTemplate.execute(host + "/" + indexNames + "/_refresh?ignore_unavailable=true", HttpMethod.POST, request -> {
+                request.getHeaders().setContentLength(0);
+                request.getHeaders().set(HttpHeaders.AUTHORIZATION, authorization);
+            }, null);
+        }
+    }
 
-        logMessageList.forEach(logMessage -> {
-            String indexName = "logs-reportportal-" + logMessage.getProjectId() + "-" + logMessage.getLaunchId();
-            String logCreateBody = create + convertToJson(logMessage) + "\n";
+    /**
+     * @param indexName           Index of all logs, or {@code null} to specify the index per item
+     * @param logs                Logs to save
+     * @param result              Summary to add the requests to
+     * @param permanentlyRejected Collects logs rejected for a permanent reason
+     * @return Logs which were rejected for a permanent reason or still rejected for a temporary reason after all retries
+     * @throws BulkIndexingException with the logs which were not indexed yet, if a request fails
+     */
+    private List<LogMessage> bulk(String indexName, List<LogMessage> logs, BulkResult result,
+                                  List<LogMessage> permanentlyRejected) {
+        String url = indexName == null ?
+                host + "/_bulk" + refreshQuery(logs) :
+                host + "/" + indexName + "/_bulk" + refreshQuery(List.of(indexName));
+        List<LogMessage> rejected = new ArrayList<>();
+        List<LogMessage> pending = logs;
+        for (int attempt = 0; ; attempt++) {
+            BulkBody body = indexName == null ? bulkBodyWriter.writeWithIndex(pending) : bulkBodyWriter.write(pending);
+            bulkBytes.record(body.size());
+            result.addRequest(body.size());
+            Timer.Sample sample = Timer.start(meterRegistry);
+            List<BulkItemFailure> failures;
+            try {
+                failures = restTemplate.execute(url, HttpMethod.PUT, writeBody(body, NDJSON), bulkResponseReader);
+            } catch (RuntimeException e) {
+                rejected.addAll(pending);
+                throw new BulkIndexingException(String.format("%d logs were not indexed", rejected.size()), rejected, e);
+            } finally {
+                sample.stop(bulkLatency);
+            }
+            if (CollectionUtils.isEmpty(failures)) {
+                return rejected;
+            }
 
-            if (logsByIndex.containsKey(indexName)) {
-                logsByIndex.put(indexName, logsByIndex.get(indexName) + logCreateBody);
-            } else {
-                logsByIndex.put(indexName, logCreateBody);
+            List<LogMessage> retryable = new ArrayList<>();
+            for (BulkItemFailure failure : failures) {
+                LogMessage logMessage = pending.get(failure.getPosition());
+                countRejection(logMessage, failure);
+                if (failure.getStatus() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                    result.addThrottledItem();
+                }
+                if (failure.isRetryable()) {
+                    retryable.add(logMessage);
+                } else {
+                    LOGGER.error("Log {} was rejected by index {} with status {}: {}",
+                            logMessage.getId(), failure.getIndex(), failure.getStatus(), failure.getReason());
+                    rejected.add(logMessage);
+                    permanentlyRejected.add(logMessage);
+                }
             }
-        });
+            if (retryable.isEmpty()) {
+                return rejected;
+            }
+            if (attempt >= maxRetries) {
+                LOGGER.error("{} logs were rejected by {} after {} retries",
+                        retryable.size(), indexName == null ? "_bulk" : indexName, maxRetries);
+                rejected.addAll(retryable);
+                return rejected;
+            }
+            LOGGER.warn("{} logs were rejected temporarily, retrying", retryable.size());
+            try {
+                backOff(attempt);
+            } catch (IllegalStateException e) {
+                rejected.addAll(retryable);
+                throw new BulkIndexingException(String.format("%d logs were not indexed", rejected.size()), rejected, e);
+            }
+            pending = retryable;
+        }
+    }
+
+    /**
+     * Rejections are tagged by index, the one of the log is used if the response item doesn't have it.
+     */
+    private void countRejection(LogMessage logMessage, BulkItemFailure failure) {
+        Counter.builder("elasticsearch.bulk.rejections")
+                .tag("index", failure.getIndex() == null ? getIndexName(logMessage) : failure.getIndex())
+                .tag("status", String.valueOf(failure.getStatus()))
+                .tag("retryable", String.valueOf(failure.isRetryable()))
+                .register(meterRegistry)
+                .increment();
+    }
 
-        logsByIndex.forEach((indexName, body) -> {
-            restTemplate.put(host + "/" + indexName + "/_bulk?refresh", getStringHttpEntity(body));
-        });
+    private String refreshQuery(List<LogMessage> logs) {
+        boolean indicesRequired = !refreshProperties.getPatterns().isEmpty() || refreshProperties.getInterval() > 0;
+        return refreshQuery(indicesRequired ?
+                logs.stream().map(SimpleElasticSearchClient::getIndexName).collect(Collectors.toSet()) :
+                Set.of());
     }
 
-    private JSONObject convertToJson(LogMessage logMessage) {
-        JSONObject personJsonObject = new JSONObject();
-        personJsonObject.put("id", logMessage.getId());
-        personJsonObject.put("message", logMessage.getLogMessage());
-        personJsonObject.put("itemId", logMessage.getItemId());
-        personJsonObject.put("@timestamp", logMessage.getLogTime());
+    private String refreshQuery(Collection<String> indexNames) {
+        RefreshPolicy policy = refreshProperties.resolve(indexNames);
+        if (policy != RefreshPolicy.IMMEDIATE && refreshProperties.getInterval() > 0) {
+            indicesToRefresh.addAll(indexNames);
+        }
+        return policy.getQueryString();
+    }
 
-        return personJsonObject;
+    private void backOff(int attempt) {
+        try {
+            Thread.sleep(retryBackoff << attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry bulk request", e);
+        }
     }
 
-    private HttpEntity<String> getStringHttpEntity(String body) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+    private RequestCallback writeBody(BulkBody body, MediaType contentType) {
+        return request -> {
+            HttpHeaders headers = request.getHeaders();
+            headers.setContentType(contentType);
+            headers.set(HttpHeaders.AUTHORIZATION, authorization);
+            if (compression) {
+                headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            } else {
+                headers.setContentLength(body.size());
+            }
+            if (request instanceof StreamingHttpOutputMessage) {
+                ((StreamingHttpOutputMessage) request).setBody(outputStream -> writeBody(body, outputStream));
+            } else {
+                writeBody(body, request.getBody());
+            }
+        };
+    }
 
-        return new HttpEntity<>(body, headers);
+    private void writeBody(BulkBody body, OutputStream outputStream) throws IOException {
+        if (compression) {
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+            body.writeTo(gzipOutputStream);
+            gzipOutputStream.finish();
+        } else {
+            body.writeTo(outputStream);
+        }
     }
 }
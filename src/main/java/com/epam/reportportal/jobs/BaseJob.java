@@ -1,26 +1,112 @@
 package com.epam.reportportal.jobs;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base of scheduled jobs. Every run started by {@link #logStart()} and finished by {@link #logFinish(Object)} is measured
+ * by the {@code job.duration} timer, a numeric result is counted as processed objects, and the time of the last successful
+ * run is exposed by the {@code job.last.success} gauge. Failed runs are counted by {@link JobMetricsAspect}.
+ * Counters by project are opt-in, as there is one counter per project and job.
+ */
 public abstract class BaseJob {
+    private static final String JOB_TAG = "job";
+    private static final String PROJECT_TAG = "project";
+    private static final String OUTCOME_TAG = "outcome";
+
     protected JdbcTemplate jdbcTemplate;
     protected final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
 
+    private final String jobName = this.getClass().getSimpleName();
+    private final ThreadLocal<Timer.Sample> runningSample = new ThreadLocal<>();
+    private final AtomicLong lastSuccess = new AtomicLong();
+    private MeterRegistry meterRegistry = Metrics.globalRegistry;
+    private boolean perProjectMetrics;
+
     public BaseJob(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param perProjectMetrics Count processed objects by project as well
+     */
+    @Value("${rp.environment.variable.metrics.perProject:false}")
+    public void setPerProjectMetrics(boolean perProjectMetrics) {
+        this.perProjectMetrics = perProjectMetrics;
+    }
+
     protected void logStart() {
-        LOGGER.info("Job {} has been started.", this.getClass().getSimpleName());
+        LOGGER.info("Job {} has been started.", jobName);
+        runningSample.set(Timer.start(meterRegistry));
     }
 
     protected void logFinish(Object result) {
-        LOGGER.info("Job {} has been finished. Result {}", this.getClass().getSimpleName(), result);
+        LOGGER.info("Job {} has been finished. Result {}", jobName, result);
+        stopSample("success");
+        if (result instanceof Number) {
+            recordProcessed(((Number) result).longValue());
+        }
+        lastSuccess.set(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+        Gauge.builder("job.last.success", lastSuccess, AtomicLong::doubleValue)
+                .description("Time of the last successful run, epoch seconds")
+                .baseUnit("seconds")
+                .tag(JOB_TAG, jobName)
+                .register(meterRegistry);
     }
 
     protected void logFinish() {
         logFinish(null);
     }
+
+    /**
+     * @param count Amount of rows or objects processed by the job
+     */
+    protected void recordProcessed(long count) {
+        Counter.builder("job.processed").tag(JOB_TAG, jobName).register(meterRegistry).increment(count);
+    }
+
+    /**
+     * @param projectId Processed project, counted separately only if per project metrics are enabled
+     * @param count     Amount of rows or objects of the project processed by the job
+     */
+    protected void recordProcessed(Long projectId, long count) {
+        recordProcessed(count);
+        if (!perProjectMetrics) {
+            return;
+        }
+        Counter.builder("job.project.processed")
+                .tag(JOB_TAG, jobName)
+                .tag(PROJECT_TAG, String.valueOf(projectId))
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    void recordFailure() {
+        stopSample("failure");
+        Counter.builder("job.failures").tag(JOB_TAG, jobName).register(meterRegistry).increment();
+    }
+
+    private void stopSample(String outcome) {
+        Timer.Sample sample = runningSample.get();
+        if (sample != null) {
+            runningSample.remove();
+            sample.stop(Timer.builder("job.duration").tag(JOB_TAG, jobName).tag(OUTCOME_TAG, outcome).register(meterRegistry));
+        }
+    }
 }
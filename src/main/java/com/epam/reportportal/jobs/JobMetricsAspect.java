@@ -0,0 +1,18 @@
+package com.epam.reportportal.jobs;
+
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts failed runs of scheduled jobs.
+ */
+@Aspect
+@Component
+public class JobMetricsAspect {
+
+    @AfterThrowing("@annotation(org.springframework.scheduling.annotation.Scheduled) && target(job)")
+    public void recordFailure(BaseJob job) {
+        job.recordFailure();
+    }
+}
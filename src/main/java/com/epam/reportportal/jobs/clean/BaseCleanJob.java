@@ -1,15 +1,34 @@
 package com.epam.reportportal.jobs.clean;
 
+import com.epam.reportportal.config.StatementDeadlineJdbcTemplate;
 import com.epam.reportportal.jobs.BaseJob;
+import com.epam.reportportal.jobs.storage.AllocatedStorageChanges;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-
-import static java.time.Duration.ofSeconds;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongBiFunction;
 
 /**
+ * Base of jobs which clean projects by their retention periods.
+ * <p>
+ * Jobs which clean by {@link #cleanExpiredRows(Map, ExpirableRows, WindowCleaner)} remember the cutoff completed for
+ * every project, and clean only rows expired since then, i.e. the window {@code (previous cutoff, new cutoff]}, if an
+ * existence probe finds any. The time when the oldest row after the cutoff expires is kept as a high-water mark, and the
+ * project is skipped until then. The mark is dropped when the retention period of the project changes or its cleanup
+ * doesn't complete. Rows inserted later with a time before the completed cutoff are cleaned by a full sweep without the
+ * lower bound, once per {@code fullSweepInterval}.
+ *
  * @author <a href="mailto:pavel_bortnik@epam.com">Pavel Bortnik</a>
  */
 public class BaseCleanJob extends BaseJob {
@@ -18,25 +37,228 @@ public class BaseCleanJob extends BaseJob {
 	protected static final String KEEP_LOGS = "job.keepLogs";
 	protected static final String KEEP_SCREENSHOTS = "job.keepScreenshots";
 
-	protected final String SELECT_PROJECTS_ATTRIBUTES = "SELECT pa.project_id AS id, pa.value AS attribute_value FROM project_attribute pa "
-			+ "JOIN attribute a ON pa.attribute_id = a.id WHERE a.name = ? AND pa.value != '0' AND TRIM(pa.value) != '';";
+	private final TaskExecutor projectCleanupExecutor;
+	private final long projectTimeout;
+	private final Map<Long, ExpiryMark> expiryMarks = new ConcurrentHashMap<>();
+	private final Map<Long, CompletedCutoff> completedCutoffs = new ConcurrentHashMap<>();
+	private RetentionPolicies retentionPolicies;
+	private AllocatedStorageChanges allocatedStorageChanges;
+	private Duration fullSweepInterval = Duration.ofDays(1);
 
-	public BaseCleanJob(JdbcTemplate jdbcTemplate) {
+	/**
+	 * @param projectCleanupExecutor Executor of project cleanups, its pool size caps the amount of concurrently cleaned projects
+	 * @param projectTimeout         Max duration of a project cleanup, milliseconds
+	 */
+	public BaseCleanJob(JdbcTemplate jdbcTemplate, TaskExecutor projectCleanupExecutor, long projectTimeout) {
 		super(jdbcTemplate);
+		this.projectCleanupExecutor = projectCleanupExecutor;
+		this.projectTimeout = projectTimeout;
+		this.retentionPolicies = new RetentionPolicies(jdbcTemplate, 0);
+	}
+
+	@Autowired(required = false)
+	public void setRetentionPolicies(RetentionPolicies retentionPolicies) {
+		this.retentionPolicies = retentionPolicies;
+	}
+
+	@Autowired(required = false)
+	public void setAllocatedStorageChanges(AllocatedStorageChanges allocatedStorageChanges) {
+		this.allocatedStorageChanges = allocatedStorageChanges;
+	}
+
+	/**
+	 * @param fullSweepInterval Interval between cleanups of all expired rows of a project, milliseconds
+	 */
+	@Value("${rp.environment.variable.clean.fullSweepInterval}")
+	public void setFullSweepInterval(long fullSweepInterval) {
+		this.fullSweepInterval = Duration.ofMillis(fullSweepInterval);
 	}
 
 	protected Map<Long, Duration> getProjectsWithAttribute(String attributeKey) {
-		return jdbcTemplate.query(SELECT_PROJECTS_ATTRIBUTES, rs -> {
-			Map<Long, Duration> result = new HashMap<>();
-			while (rs.next()) {
-				String attributeValue = rs.getString("attribute_value");
-				try {
-					result.put(rs.getLong("id"), ofSeconds(Long.parseLong(attributeValue)));
-				} catch (NumberFormatException e) {
-					LOGGER.error("Bad attribute value format for {}. Expected a number, actual is {}", attributeKey, attributeValue);
-				}
+		return retentionPolicies.get(attributeKey);
+	}
+
+	/**
+	 * Makes the incremental calculation of allocated storage recalculate the project.
+	 *
+	 * @param count Amount of deleted attachments, -1 if they may have been deleted by cascade
+	 */
+	protected void recordAttachmentDeletion(Long projectId, long count) {
+		if (allocatedStorageChanges != null) {
+			allocatedStorageChanges.recordDeletion(projectId, count);
+		}
+	}
+
+	protected void recordAttachmentDeletion(Collection<Long> projectIds) {
+		if (allocatedStorageChanges != null) {
+			allocatedStorageChanges.recordDeletion(projectIds);
+		}
+	}
+
+	/**
+	 * Cleans projects concurrently and waits for all of them. Statements of a project cleanup are bounded by its timeout
+	 * through {@link StatementDeadlineJdbcTemplate}, and a cleanup which exceeds it is interrupted, so it is expected to
+	 * check the interrupted flag between statements.
+	 *
+	 * @param projects Retention period by project id
+	 * @param cleaner  Cleanup of a project, returns the amount of affected rows
+	 * @return Aggregated result
+	 */
+	protected CleanupResult cleanProjects(Map<Long, Duration> projects, ToLongBiFunction<Long, Duration> cleaner) {
+		CleanupResult result = new CleanupResult();
+		CompletableFuture.allOf(projects.entrySet()
+				.stream()
+				.map(project -> CompletableFuture.runAsync(() -> cleanProject(project.getKey(), project.getValue(), cleaner, result),
+						projectCleanupExecutor
+				))
+				.toArray(CompletableFuture[]::new)).join();
+		return result;
+	}
+
+	/**
+	 * Cleans projects like {@link #cleanProjects(Map, ToLongBiFunction)}, but only rows expired since the cutoff completed
+	 * by the previous cleanup of a project. Projects with nothing to expire are skipped.
+	 *
+	 * @param projects Retention period by project id
+	 * @param rows     Expirable rows of the job
+	 * @param cleaner  Cleanup of a window of a project, returns the amount of affected rows
+	 * @return Aggregated result
+	 */
+	protected CleanupResult cleanExpiredRows(Map<Long, Duration> projects, ExpirableRows rows, WindowCleaner cleaner) {
+		expiryMarks.keySet().retainAll(projects.keySet());
+		completedCutoffs.keySet().retainAll(projects.keySet());
+		final LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+		final Map<Long, Duration> expired = new HashMap<>();
+		projects.forEach((projectId, retention) -> {
+			ExpiryMark mark = expiryMarks.get(projectId);
+			if (mark == null || !mark.retention.equals(retention) || !now.isBefore(mark.nextExpiry)) {
+				expired.put(projectId, retention);
+			}
+		});
+		CleanupResult result = cleanProjects(expired, (projectId, retention) -> {
+			expiryMarks.remove(projectId);
+			final LocalDateTime cutoff = now.minus(retention);
+			final CompletedCutoff completed = completedCutoffs.get(projectId);
+			final boolean fullSweep = completed == null || !now.isBefore(completed.sweptAt.plus(fullSweepInterval));
+			final LocalDateTime sweptAt = fullSweep ? now : completed.sweptAt;
+			final LocalDateTime from = fullSweep ? null : completed.cutoff;
+			long affected = 0;
+			if (from != null && !from.isBefore(cutoff)) {
+				LOGGER.debug("Nothing has expired since cutoff {} for project {}", from, projectId);
+			} else if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(rows.existsQuery(from),
+					Boolean.class,
+					rows.args(projectId, from, cutoff)
+			))) {
+				LOGGER.debug("No expired rows till cutoff {} for project {}", cutoff, projectId);
+			} else {
+				affected = cleaner.clean(projectId, from, cutoff);
+			}
+			if (!Thread.currentThread().isInterrupted()) {
+				final LocalDateTime completedCutoff = from != null && from.isAfter(cutoff) ? from : cutoff;
+				completedCutoffs.put(projectId, new CompletedCutoff(completedCutoff, sweptAt));
+				final LocalDateTime oldest = jdbcTemplate.queryForObject(rows.oldestAfterQuery(), LocalDateTime.class, projectId, completedCutoff);
+				final LocalDateTime nextExpiry = (oldest == null ? now : oldest).plus(retention);
+				final LocalDateTime nextSweep = sweptAt.plus(fullSweepInterval);
+				expiryMarks.put(projectId, new ExpiryMark(retention, nextExpiry.isBefore(nextSweep) ? nextExpiry : nextSweep));
+			}
+			return affected;
+		});
+		result.skipped(projects.size() - expired.size());
+		return result;
+	}
+
+	private void cleanProject(Long projectId, Duration retention, ToLongBiFunction<Long, Duration> cleaner, CleanupResult result) {
+		final long deadline = System.currentTimeMillis() + projectTimeout;
+		final ProjectTimeout timeout = new ProjectTimeout(Thread.currentThread());
+		boolean failed = false;
+		try {
+			long affected = StatementDeadlineJdbcTemplate.withDeadline(deadline, () -> cleaner.applyAsLong(projectId, retention));
+			result.addAffected(affected);
+			recordProcessed(projectId, affected);
+		} catch (Exception e) {
+			failed = true;
+			LOGGER.error("Cleanup of project {} has failed", projectId, e);
+		} finally {
+			timeout.finish();
+		}
+		if (timeout.fired || failed && System.currentTimeMillis() >= deadline) {
+			LOGGER.warn("Cleanup of project {} has been stopped after {} ms", projectId, projectTimeout);
+			result.timedOut();
+		} else if (failed) {
+			result.failed();
+		} else {
+			result.completed();
+		}
+	}
+
+	/**
+	 * Interrupts a project cleanup after the timeout, unless the cleanup has finished before.
+	 */
+	private final class ProjectTimeout {
+
+		private final Thread thread;
+		private final CompletableFuture<Void> task;
+		private boolean finished;
+		private boolean fired;
+
+		private ProjectTimeout(Thread thread) {
+			this.thread = thread;
+			this.task = CompletableFuture.runAsync(this::fire, CompletableFuture.delayedExecutor(projectTimeout, TimeUnit.MILLISECONDS));
+		}
+
+		private synchronized void fire() {
+			if (!finished) {
+				fired = true;
+				thread.interrupt();
+			}
+		}
+
+		/**
+		 * Cancels the timeout. An interruption happens only before it under the same lock, so it is cleared here and can't
+		 * reach a next cleanup of the thread.
+		 */
+		private synchronized void finish() {
+			finished = true;
+			task.cancel(false);
+			if (fired) {
+				Thread.interrupted();
 			}
-			return result;
-		}, attributeKey);
+		}
+	}
+
+	private static final class ExpiryMark {
+
+		private final Duration retention;
+		private final LocalDateTime nextExpiry;
+
+		private ExpiryMark(Duration retention, LocalDateTime nextExpiry) {
+			this.retention = retention;
+			this.nextExpiry = nextExpiry;
+		}
+	}
+
+	private static final class CompletedCutoff {
+
+		private final LocalDateTime cutoff;
+		private final LocalDateTime sweptAt;
+
+		private CompletedCutoff(LocalDateTime cutoff, LocalDateTime sweptAt) {
+			this.cutoff = cutoff;
+			this.sweptAt = sweptAt;
+		}
+	}
+
+	/**
+	 * Cleanup of expired rows of a project.
+	 */
+	@FunctionalInterface
+	protected interface WindowCleaner {
+
+		/**
+		 * @param from   Exclusive lower bound of the window, {@code null} for all rows up to the cutoff
+		 * @param cutoff Inclusive upper bound of the window
+		 * @return Amount of affected rows
+		 */
+		long clean(Long projectId, LocalDateTime from, LocalDateTime cutoff);
 	}
 }
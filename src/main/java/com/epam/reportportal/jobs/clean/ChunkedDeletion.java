@@ -0,0 +1,173 @@
+package com.epam.reportportal.jobs.clean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * Deletes rows in primary key order with a separate statement per chunk of {@code chunkSize} rows, so every chunk is
+ * committed on its own and neither a transaction nor row locks outlive a single chunk.
+ * <p>
+ * The last deleted id is stored as a checkpoint by {@link DeletionCheckpoints} until the deletion completes, so a deletion
+ * interrupted by a timeout or a restart continues from it instead of scanning already cleaned ids again:
+ * <ul>
+ * <li>a deletion of fixed rows, like rows of given launches, is resumed only with the same condition and arguments</li>
+ * <li>a deletion of expired rows is keyed by the table and project, and keeps the cutoff of the interrupted run. The
+ * next run deletes rows up to the checkpoint id which have expired since that cutoff, and the rest of the rows after it.</li>
+ * </ul>
+ */
+public class ChunkedDeletion {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedDeletion.class);
+
+	private static final String ID_COLUMN = "id";
+	private static final String UP_TO_ID_CONDITION = " AND id <= ?";
+	private static final String DELETE_CHUNK_QUERY = "WITH deleted AS (DELETE FROM %1$s WHERE %3$s IN (SELECT %3$s FROM %1$s WHERE %2$s AND %3$s > ? "
+			+ "ORDER BY %3$s LIMIT ?) RETURNING %3$s) SELECT count(*) AS deleted, coalesce(max(%3$s), 0) AS last_id FROM deleted;";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final DeletionCheckpoints checkpoints;
+	private final int chunkSize;
+	private final long throttle;
+
+	/**
+	 * @param chunkSize Max amount of rows deleted by a single statement
+	 * @param throttle  Pause between chunks, milliseconds
+	 */
+	public ChunkedDeletion(JdbcTemplate jdbcTemplate, int chunkSize, long throttle) {
+		this(jdbcTemplate, new DeletionCheckpoints(jdbcTemplate), chunkSize, throttle);
+	}
+
+	ChunkedDeletion(JdbcTemplate jdbcTemplate, DeletionCheckpoints checkpoints, int chunkSize, long throttle) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be greater than 0");
+		}
+		this.jdbcTemplate = jdbcTemplate;
+		this.checkpoints = checkpoints;
+		this.chunkSize = chunkSize;
+		this.throttle = throttle;
+	}
+
+	/**
+	 * @param table         Table with a numeric {@code id} primary key
+	 * @param condition     SQL condition of rows to delete
+	 * @param checkpointKey Key of the checkpoint, the same for repeated deletions of the same rows
+	 * @param args          Arguments of the condition
+	 * @return Amount of deleted rows, the deletion stops early if the thread is interrupted
+	 */
+	public long delete(String table, String condition, String checkpointKey, Object... args) {
+		return deleteByKey(table, ID_COLUMN, condition, checkpointKey, args);
+	}
+
+	/**
+	 * @param table         Table to delete from
+	 * @param keyColumn     Numeric unique column to order chunks by, like a primary key other than {@code id}
+	 * @param condition     SQL condition of rows to delete
+	 * @param checkpointKey Key of the checkpoint, the same for repeated deletions of the same rows
+	 * @param args          Arguments of the condition
+	 * @return Amount of deleted rows, the deletion stops early if the thread is interrupted
+	 */
+	public long deleteByKey(String table, String keyColumn, String condition, String checkpointKey, Object... args) {
+		final String signature = String.format(DELETE_CHUNK_QUERY, table, condition, keyColumn) + Arrays.deepToString(args);
+		final DeletionCheckpoints.Checkpoint checkpoint = checkpoints.find(checkpointKey);
+		long lastId = 0;
+		if (checkpoint != null && signature.equals(checkpoint.signature)) {
+			lastId = checkpoint.lastId;
+			LOGGER.info("Resume deletion from {} with id greater than {}", table, lastId);
+		}
+		return deleteChunks(table, keyColumn, condition, args, lastId, checkpointKey, checkpoint != null,
+				id -> new DeletionCheckpoints.Checkpoint(signature, null, id)
+		);
+	}
+
+	/**
+	 * Deletes expired rows of the window {@code (from, cutoff]} of a project, see {@link ExpirableRows}.
+	 *
+	 * @return Amount of deleted rows, the deletion stops early if the thread is interrupted
+	 */
+	public long deleteExpired(ExpirableRows rows, Long projectId, LocalDateTime from, LocalDateTime cutoff) {
+		final String checkpointKey = rows.getTable() + ":" + projectId;
+		final DeletionCheckpoints.Checkpoint checkpoint = checkpoints.find(checkpointKey);
+		long total = 0;
+		long lastId = 0;
+		if (checkpoint != null && checkpoint.cutoff != null) {
+			lastId = checkpoint.lastId;
+			LOGGER.info("Resume deletion from {} with id greater than {} for project {}, interrupted with cutoff {}",
+					rows.getTable(),
+					lastId,
+					projectId,
+					checkpoint.cutoff
+			);
+			// rows up to the checkpoint are deleted up to its cutoff, only the ones expired since then are left there
+			final LocalDateTime expiredFrom = from != null && from.isAfter(checkpoint.cutoff) ? from : checkpoint.cutoff;
+			if (expiredFrom.isBefore(cutoff)) {
+				final Object[] windowArgs = rows.args(projectId, expiredFrom, cutoff);
+				final Object[] args = Arrays.copyOf(windowArgs, windowArgs.length + 1);
+				args[windowArgs.length] = lastId;
+				total += deleteChunks(rows.getTable(), ID_COLUMN, rows.condition(expiredFrom) + UP_TO_ID_CONDITION, args, 0, null, false, null);
+				if (Thread.currentThread().isInterrupted()) {
+					return total;
+				}
+			}
+		}
+		return total + deleteChunks(rows.getTable(), ID_COLUMN, rows.condition(from), rows.args(projectId, from, cutoff), lastId,
+				checkpointKey, checkpoint != null,
+				id -> new DeletionCheckpoints.Checkpoint(null, cutoff, id)
+		);
+	}
+
+	/**
+	 * @param checkpointKey Key of the checkpoint to store after every chunk, {@code null} to keep the stored one as is
+	 * @param stored        Whether the key has a stored checkpoint to remove on completion
+	 */
+	private long deleteChunks(String table, String keyColumn, String condition, Object[] args, long fromId, String checkpointKey,
+			boolean stored, LongFunction<DeletionCheckpoints.Checkpoint> checkpoint) {
+		final String query = String.format(DELETE_CHUNK_QUERY, table, condition, keyColumn);
+		final Object[] chunkArgs = new Object[args.length + 2];
+		System.arraycopy(args, 0, chunkArgs, 0, args.length);
+		chunkArgs[args.length + 1] = chunkSize;
+
+		long total = 0;
+		long lastId = fromId;
+		while (true) {
+			chunkArgs[args.length] = lastId;
+			final long[] chunk = jdbcTemplate.queryForObject(query,
+					(rs, rowNum) -> new long[] { rs.getLong("deleted"), rs.getLong("last_id") },
+					chunkArgs
+			);
+			total += chunk[0];
+			if (chunk[0] < chunkSize) {
+				if (checkpointKey != null && stored) {
+					checkpoints.remove(checkpointKey);
+				}
+				return total;
+			}
+			lastId = chunk[1];
+			if (checkpointKey != null) {
+				checkpoints.save(checkpointKey, checkpoint.apply(lastId));
+				stored = true;
+			}
+			if (!pause()) {
+				LOGGER.warn("Deletion from {} is interrupted after id {}", table, lastId);
+				return total;
+			}
+		}
+	}
+
+	private boolean pause() {
+		if (throttle <= 0) {
+			return !Thread.currentThread().isInterrupted();
+		}
+		try {
+			Thread.sleep(throttle);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
@@ -1,13 +1,16 @@
 package com.epam.reportportal.jobs.clean;
 
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.time.Duration;
+import java.util.Map;
 
 /**
  * @author <a href="mailto:pavel_bortnik@epam.com">Pavel Bortnik</a>
@@ -16,12 +19,29 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class CleanAttachmentJob extends BaseCleanJob {
 
 	private static final String MOVING_QUERY =
-			"WITH moved_rows AS (DELETE FROM attachment WHERE project_id = ? AND creation_date <= ?::TIMESTAMP RETURNING *) "
+			"WITH moved_rows AS (DELETE FROM attachment WHERE %s RETURNING *) "
 					+ "INSERT INTO attachment_deletion (id, file_id, thumbnail_id, creation_attachment_date, deletion_date) "
 					+ "SELECT id, file_id, thumbnail_id, creation_date, NOW() FROM moved_rows;";
+	// files of a dropped partition are still deleted from the storage
+	private static final String MOVING_PARTITION_QUERY =
+			"INSERT INTO attachment_deletion (id, file_id, thumbnail_id, creation_attachment_date, deletion_date) "
+					+ "SELECT id, file_id, thumbnail_id, creation_date, NOW() FROM %s;";
 
-	public CleanAttachmentJob(JdbcTemplate jdbcTemplate) {
-		super(jdbcTemplate);
+	private static final String ATTACHMENT_TABLE = "attachment";
+	private static final String CREATION_DATE_COLUMN = "creation_date";
+	private static final ExpirableRows ATTACHMENTS = new ExpirableRows(ATTACHMENT_TABLE, CREATION_DATE_COLUMN);
+
+	private final PartitionRetention partitionRetention;
+
+	public CleanAttachmentJob(JdbcTemplate jdbcTemplate, TaskExecutor projectCleanupExecutor,
+							  @Value("${rp.environment.variable.clean.project.timeout}") long projectTimeout,
+							  PlatformTransactionManager transactionManager,
+							  @Value("${rp.environment.variable.clean.partition.enabled}") boolean partitionRetentionEnabled,
+							  @Value("${rp.environment.variable.clean.partition.lockTimeout}") long partitionLockTimeout) {
+		super(jdbcTemplate, projectCleanupExecutor, projectTimeout);
+		this.partitionRetention = partitionRetentionEnabled ?
+				new PartitionRetention(jdbcTemplate, new TransactionTemplate(transactionManager), partitionLockTimeout) :
+				null;
 	}
 
 	@Scheduled(cron = "${rp.environment.variable.clean.attachment.cron}")
@@ -32,13 +52,20 @@ public class CleanAttachmentJob extends BaseCleanJob {
 
 	void moveAttachments() {
 		logStart();
-		AtomicInteger counter = new AtomicInteger(0);
-		getProjectsWithAttribute(KEEP_SCREENSHOTS).forEach((projectId, duration) -> {
-			LocalDateTime lessThanDate = LocalDateTime.now(ZoneOffset.UTC).minus(duration);
-			int movedCount = jdbcTemplate.update(MOVING_QUERY, projectId, lessThanDate);
-			counter.addAndGet(movedCount);
+		final Map<Long, Duration> projects = getProjectsWithAttribute(KEEP_SCREENSHOTS);
+		final DroppedPartitions dropped = partitionRetention == null ?
+				new DroppedPartitions() :
+				partitionRetention.dropExpired(ATTACHMENT_TABLE, CREATION_DATE_COLUMN, projects, MOVING_PARTITION_QUERY);
+		CleanupResult result = cleanExpiredRows(projects, ATTACHMENTS, (projectId, from, lessThanDate) -> {
+			int movedCount = jdbcTemplate.update(String.format(MOVING_QUERY, ATTACHMENTS.condition(from)),
+					ATTACHMENTS.args(projectId, from, lessThanDate)
+			);
 			LOGGER.info("Moved {} attachments to the deletion table for project {}", movedCount, projectId);
+			recordAttachmentDeletion(projectId, movedCount);
+			return movedCount;
 		});
-		logFinish(counter.get());
+		recordAttachmentDeletion(dropped.getProjectIds());
+		result.addAffected(dropped.getRows());
+		logFinish(result);
 	}
 }
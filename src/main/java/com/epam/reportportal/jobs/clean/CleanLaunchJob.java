@@ -2,41 +2,59 @@ package com.epam.reportportal.jobs.clean;
 
 import com.epam.reportportal.analyzer.index.IndexerServiceClient;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
+ * Deletes expired launches by chunks of ids, every chunk in its own transaction.
+ * <p>
+ * Logs and test items of a chunk are deleted beforehand by chunks of their own, so the cascade of the launch deletion
+ * touches only what is left of them. Ids are passed as a single array parameter, whatever the size of the chunk.
+ *
  * @author <a href="mailto:pavel_bortnik@epam.com">Pavel Bortnik</a>
  */
 @Service
 public class CleanLaunchJob extends BaseCleanJob {
 
-	private static final String IDS_PARAM = "ids";
-	private static final String PROJECT_ID_PARAM = "projectId";
-	private static final String START_TIME_PARAM = "startTime";
+	private static final String SELECT_LAUNCH_ID_CHUNK_QUERY = "SELECT id FROM launch WHERE %s AND id > ? ORDER BY id LIMIT ?;";
+	private static final String DELETE_CLUSTER_QUERY = "DELETE FROM clusters WHERE clusters.launch_id = ANY(?::BIGINT[]);";
+	private static final String DELETE_LAUNCH_QUERY = "DELETE FROM launch WHERE id = ANY(?::BIGINT[]);";
+	private static final ExpirableRows LAUNCHES = new ExpirableRows("launch", "start_time");
 
-	private static final String SELECT_LAUNCH_ID_QUERY = "SELECT id FROM launch WHERE project_id = :projectId AND start_time <= :startTime::TIMESTAMP;";
-	private static final String DELETE_CLUSTER_QUERY = "DELETE FROM clusters WHERE clusters.launch_id IN (:ids);";
-	private static final String DELETE_LAUNCH_QUERY = "DELETE FROM launch WHERE id IN (:ids);";
+	private static final String LOG_TABLE = "log";
+	private static final String LAUNCH_LOGS_CONDITION = "launch_id = ANY(?::BIGINT[])";
+	private static final String ITEM_LOGS_CONDITION = "item_id IN (SELECT item_id FROM test_item WHERE launch_id = ANY(?::BIGINT[]))";
+	private static final String TEST_ITEM_TABLE = "test_item";
+	private static final String TEST_ITEM_KEY = "item_id";
+	private static final String TEST_ITEMS_CONDITION = "launch_id = ANY(?::BIGINT[])";
 
-	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 	private final CleanLogJob cleanLogJob;
 	private final IndexerServiceClient indexerServiceClient;
+	private final TransactionTemplate transactionTemplate;
+	private final ChunkedDeletion chunkedDeletion;
+	private final int chunkSize;
 
-	public CleanLaunchJob(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
-						  CleanLogJob cleanLogJob, IndexerServiceClient indexerServiceClient) {
-		super(jdbcTemplate);
-		this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+	public CleanLaunchJob(JdbcTemplate jdbcTemplate, TaskExecutor projectCleanupExecutor,
+						  @Value("${rp.environment.variable.clean.project.timeout}") long projectTimeout, CleanLogJob cleanLogJob,
+						  IndexerServiceClient indexerServiceClient, PlatformTransactionManager transactionManager,
+						  @Value("${rp.environment.variable.clean.launch.chunkSize}") int chunkSize,
+						  @Value("${rp.environment.variable.clean.log.chunkSize}") int rowChunkSize,
+						  @Value("${rp.environment.variable.clean.log.throttle}") long throttle) {
+		super(jdbcTemplate, projectCleanupExecutor, projectTimeout);
 		this.cleanLogJob = cleanLogJob;
 		this.indexerServiceClient = indexerServiceClient;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.chunkedDeletion = new ChunkedDeletion(jdbcTemplate, rowChunkSize, throttle);
+		this.chunkSize = chunkSize;
 	}
 
 	@Scheduled(cron = "${rp.environment.variable.clean.launch.cron}")
@@ -46,35 +64,52 @@ public class CleanLaunchJob extends BaseCleanJob {
 		cleanLogJob.removeLogs();
 	}
 
-	private void removeLaunches() {
+	void removeLaunches() {
 		logStart();
-		AtomicInteger counter = new AtomicInteger(0);
-		getProjectsWithAttribute(KEEP_LAUNCHES).forEach((projectId, duration) -> {
-			final LocalDateTime lessThanDate = LocalDateTime.now(ZoneOffset.UTC).minus(duration);
-			final List<Long> launchIds = getLaunchIds(projectId, lessThanDate);
-			if (!launchIds.isEmpty()) {
-				deleteClusters(launchIds);
-				int deleted = namedParameterJdbcTemplate.update(DELETE_LAUNCH_QUERY, Map.of(IDS_PARAM, launchIds));
-				counter.addAndGet(deleted);
-				LOGGER.info("Delete {} launches for project {}", deleted, projectId);
-				// to avoid error message in analyzer log, doesn't find index
-				if (deleted > 0) {
-					indexerServiceClient.removeFromIndexLessThanLaunchDate(projectId, lessThanDate);
-					LOGGER.info("Send message for deletion to analyzer for project {}", projectId);
+		CleanupResult result = cleanExpiredRows(getProjectsWithAttribute(KEEP_LAUNCHES), LAUNCHES, (projectId, from, lessThanDate) -> {
+			final String query = String.format(SELECT_LAUNCH_ID_CHUNK_QUERY, LAUNCHES.condition(from));
+			final Object[] windowArgs = LAUNCHES.args(projectId, from, lessThanDate);
+			final Object[] args = Arrays.copyOf(windowArgs, windowArgs.length + 2);
+			args[args.length - 1] = chunkSize;
+			long deleted = 0;
+			long lastId = 0;
+			while (!Thread.currentThread().isInterrupted()) {
+				args[args.length - 2] = lastId;
+				final List<Long> launchIds = jdbcTemplate.queryForList(query, Long.class, args);
+				if (launchIds.isEmpty()) {
+					break;
 				}
+				deleted += deleteLaunches(projectId, launchIds);
+				lastId = launchIds.get(launchIds.size() - 1);
 			}
+			LOGGER.info("Delete {} launches for project {}", deleted, projectId);
+			// to avoid error message in analyzer log, doesn't find index
+			if (deleted > 0) {
+				indexerServiceClient.removeFromIndexLessThanLaunchDate(projectId, lessThanDate);
+				LOGGER.info("Send message for deletion to analyzer for project {}", projectId);
+			}
+			return deleted;
 		});
-		logFinish(counter.get());
-	}
-
-	private List<Long> getLaunchIds(Long projectId, LocalDateTime lessThanDate) {
-		return namedParameterJdbcTemplate.queryForList(SELECT_LAUNCH_ID_QUERY,
-				Map.of(PROJECT_ID_PARAM, projectId, START_TIME_PARAM, lessThanDate),
-				Long.class
-		);
+		logFinish(result);
 	}
 
-	private void deleteClusters(List<Long> launchIds) {
-		namedParameterJdbcTemplate.update(DELETE_CLUSTER_QUERY, Map.of(IDS_PARAM, launchIds));
+	private int deleteLaunches(Long projectId, List<Long> launchIds) {
+		final String ids = launchIds.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+		final String checkpointKey = "launch:" + projectId + ":" + launchIds.get(0) + ":";
+		chunkedDeletion.delete(LOG_TABLE, LAUNCH_LOGS_CONDITION, checkpointKey + "launch-log", ids);
+		chunkedDeletion.delete(LOG_TABLE, ITEM_LOGS_CONDITION, checkpointKey + "item-log", ids);
+		chunkedDeletion.deleteByKey(TEST_ITEM_TABLE, TEST_ITEM_KEY, TEST_ITEMS_CONDITION, checkpointKey + TEST_ITEM_TABLE, ids);
+		if (Thread.currentThread().isInterrupted()) {
+			return 0;
+		}
+		final Integer deleted = transactionTemplate.execute(status -> {
+			jdbcTemplate.update(DELETE_CLUSTER_QUERY, ids);
+			return jdbcTemplate.update(DELETE_LAUNCH_QUERY, ids);
+		});
+		if (deleted != null && deleted > 0) {
+			// attachments of deleted launches are deleted by cascade
+			recordAttachmentDeletion(projectId, -1);
+		}
+		return deleted == null ? 0 : deleted;
 	}
 }
@@ -2,13 +2,20 @@ package com.epam.reportportal.jobs.clean;
 
 import com.epam.reportportal.analyzer.index.IndexerServiceClient;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author <a href="mailto:pavel_bortnik@epam.com">Pavel Bortnik</a>
@@ -16,16 +23,30 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Service
 public class CleanLogJob extends BaseCleanJob {
 
-	private static final String DELETE_LOGS_QUERY = "DELETE FROM log WHERE project_id = ? AND log_time <= ?::TIMESTAMP;";
+	private static final String LOG_TABLE = "log";
+	private static final String LOG_TIME_COLUMN = "log_time";
+	private static final ExpirableRows LOGS = new ExpirableRows(LOG_TABLE, LOG_TIME_COLUMN);
 
 	private final CleanAttachmentJob cleanAttachmentJob;
 	private final IndexerServiceClient indexerServiceClient;
+	private final ChunkedDeletion chunkedDeletion;
+	private final PartitionRetention partitionRetention;
 
-	public CleanLogJob(JdbcTemplate jdbcTemplate, CleanAttachmentJob cleanAttachmentJob,
-					   IndexerServiceClient indexerServiceClient) {
-		super(jdbcTemplate);
+	public CleanLogJob(JdbcTemplate jdbcTemplate, TaskExecutor projectCleanupExecutor,
+					   @Value("${rp.environment.variable.clean.project.timeout}") long projectTimeout,
+					   CleanAttachmentJob cleanAttachmentJob, IndexerServiceClient indexerServiceClient,
+					   @Value("${rp.environment.variable.clean.log.chunkSize}") int chunkSize,
+					   @Value("${rp.environment.variable.clean.log.throttle}") long throttle,
+					   PlatformTransactionManager transactionManager,
+					   @Value("${rp.environment.variable.clean.partition.enabled}") boolean partitionRetentionEnabled,
+					   @Value("${rp.environment.variable.clean.partition.lockTimeout}") long partitionLockTimeout) {
+		super(jdbcTemplate, projectCleanupExecutor, projectTimeout);
 		this.cleanAttachmentJob = cleanAttachmentJob;
 		this.indexerServiceClient = indexerServiceClient;
+		this.chunkedDeletion = new ChunkedDeletion(jdbcTemplate, chunkSize, throttle);
+		this.partitionRetention = partitionRetentionEnabled ?
+				new PartitionRetention(jdbcTemplate, new TransactionTemplate(transactionManager), partitionLockTimeout) :
+				null;
 	}
 
 	@Scheduled(cron = "${rp.environment.variable.clean.log.cron}")
@@ -37,18 +58,32 @@ public class CleanLogJob extends BaseCleanJob {
 
 	void removeLogs() {
 		logStart();
-		AtomicInteger counter = new AtomicInteger(0);
-		getProjectsWithAttribute(KEEP_LOGS).forEach((projectId, duration) -> {
-			final LocalDateTime lessThanDate = LocalDateTime.now(ZoneOffset.UTC).minus(duration);
-			int deleted = jdbcTemplate.update(DELETE_LOGS_QUERY, projectId, lessThanDate);
-			counter.addAndGet(deleted);
+		final Map<Long, Duration> projects = getProjectsWithAttribute(KEEP_LOGS);
+		final DroppedPartitions dropped = partitionRetention == null ?
+				new DroppedPartitions() :
+				partitionRetention.dropExpired(LOG_TABLE, LOG_TIME_COLUMN, projects, null);
+		final Set<Long> notified = ConcurrentHashMap.newKeySet();
+		CleanupResult result = cleanExpiredRows(projects, LOGS, (projectId, from, lessThanDate) -> {
+			long deleted = chunkedDeletion.deleteExpired(LOGS, projectId, from, lessThanDate);
 			LOGGER.info("Delete {} logs for project {}", deleted, projectId);
 			// to avoid error message in analyzer log, doesn't find index
 			if (deleted > 0) {
 				indexerServiceClient.removeFromIndexLessThanLogDate(projectId, lessThanDate);
 				LOGGER.info("Send message for deletion to analyzer for project {}", projectId);
+				notified.add(projectId);
 			}
+			return deleted;
 		});
-		logFinish(counter.get());
+		// logs of dropped partitions are removed from the index even if the project had nothing else to clean
+		dropped.getProjectIds()
+				.stream()
+				.filter(projectId -> projects.containsKey(projectId) && !notified.contains(projectId))
+				.forEach(projectId -> {
+					LocalDateTime lessThanDate = LocalDateTime.now(ZoneOffset.UTC).minus(projects.get(projectId));
+					indexerServiceClient.removeFromIndexLessThanLogDate(projectId, lessThanDate);
+					LOGGER.info("Send message for deletion to analyzer for project {}", projectId);
+				});
+		result.addAffected(dropped.getRows());
+		logFinish(result);
 	}
 }
@@ -4,15 +4,19 @@ import com.epam.reportportal.jobs.BaseJob;
 import com.epam.reportportal.model.StaleMaterializedView;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -20,6 +24,9 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
+ * Drops stale materialized views by batches, with a single DROP statement per batch. A batch is dropped in a transaction
+ * with a lock timeout, so a batch with a view in use is rolled back and retried at the end of the run instead of waiting.
+ *
  * @author <a href="mailto:ivan_budayeu@epam.com">Ivan Budayeu</a>
  */
 @Service
@@ -31,25 +38,32 @@ public class CleanMaterializedViewJob extends BaseJob {
 
 	private static final String NAMES_PARAM = "names";
 
-	private static final String SELECT_STALE_VIEWS = "SELECT id, name FROM stale_materialized_view WHERE creation_date <= :timeBound::TIMESTAMP ORDER BY id LIMIT :batchSize";
-	private static final String SELECT_EXISTING_VIEWS_BY_NAME_IN = "SELECT matviewname FROM pg_matviews WHERE matviewname IN (:names)";
-	private static final String DELETE_STALE_VIEWS_BY_NAMES = "DELETE FROM stale_materialized_view WHERE name IN (:names)";
+	private static final String SELECT_STALE_VIEWS = "SELECT id, name FROM stale_materialized_view WHERE creation_date <= :timeBound::TIMESTAMP AND id > :id "
+			+ "ORDER BY id LIMIT :batchSize";
+	private static final String DELETE_STALE_VIEWS_RETURNING_EXISTING = "WITH deleted AS (DELETE FROM stale_materialized_view WHERE name IN (:names) "
+			+ "RETURNING name) SELECT d.name, EXISTS (SELECT 1 FROM pg_matviews m WHERE m.matviewname = d.name) AS existing FROM deleted d";
 
 	private static final String DROP_MATERIALIZED_VIEW = "DROP MATERIALIZED VIEW IF EXISTS %s";
+	private static final String SET_LOCK_TIMEOUT = "SET LOCAL lock_timeout = %d";
 
 	private static final Pattern VIEW_NAME_PATTERN = Pattern.compile("^[A-Za-z0-9_-]*$");
 
 	private final Integer batchSize;
 	private final Integer liveTimeout;
+	private final long lockTimeout;
 	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
 
 	public CleanMaterializedViewJob(JdbcTemplate jdbcTemplate, @Value("${rp.environment.variable.clean.view.batch}") Integer batchSize,
 			@Value("${rp.environment.variable.clean.view.liveTimeout}") Integer liveTimeout,
-			NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+			@Value("${rp.environment.variable.clean.view.lockTimeout}") long lockTimeout,
+			NamedParameterJdbcTemplate namedParameterJdbcTemplate, PlatformTransactionManager transactionManager) {
 		super(jdbcTemplate);
 		this.batchSize = batchSize;
 		this.liveTimeout = liveTimeout;
+		this.lockTimeout = lockTimeout;
 		this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
 	}
 
 	@Scheduled(cron = "${rp.environment.variable.clean.view.cron}")
@@ -58,9 +72,10 @@ public class CleanMaterializedViewJob extends BaseJob {
 		logStart();
 		final AtomicInteger existingCounter = new AtomicInteger(0);
 		final AtomicInteger staleCounter = new AtomicInteger(0);
+		final List<List<String>> skippedBatches = new ArrayList<>();
 
 		final LocalDateTime timeBound = LocalDateTime.now(ZoneOffset.UTC).minus(Duration.ofSeconds(liveTimeout));
-		List<StaleMaterializedView> staleViews = getStaleViews(timeBound);
+		List<StaleMaterializedView> staleViews = getStaleViews(timeBound, 0L);
 
 		while (!staleViews.isEmpty()) {
 			final List<String> viewNames = staleViews.stream()
@@ -68,35 +83,63 @@ public class CleanMaterializedViewJob extends BaseJob {
 					.filter(name -> VIEW_NAME_PATTERN.matcher(name).matches())
 					.collect(Collectors.toList());
 
-			final int existingRemoved = removeExistingViews(viewNames);
-			existingCounter.addAndGet(existingRemoved);
+			if (!viewNames.isEmpty() && !removeViews(viewNames, staleCounter, existingCounter)) {
+				skippedBatches.add(viewNames);
+			}
 
-			final int staleRemoved = removeStaleViews(viewNames);
-			staleCounter.addAndGet(staleRemoved);
-
-			staleViews = getStaleViews(timeBound);
+			staleViews = getStaleViews(timeBound, staleViews.get(staleViews.size() - 1).getId());
 		}
 
-		logFinish(String.format("Stale removed: %d, Existing removed: %d", staleCounter.get(), existingCounter.get()));
+		final int skipped = skippedBatches.stream()
+				.filter(viewNames -> !removeViews(viewNames, staleCounter, existingCounter))
+				.mapToInt(List::size)
+				.sum();
 
-	}
+		recordProcessed(existingCounter.get());
+		logFinish(String.format("Stale removed: %d, Existing removed: %d, Skipped because of locks: %d",
+				staleCounter.get(),
+				existingCounter.get(),
+				skipped
+		));
 
-	private List<StaleMaterializedView> getStaleViews(LocalDateTime timeBound) {
-		final Map<String, Object> selectParams = Map.of(TIME_BOUND_PARAM, timeBound, BATCH_SIZE_PARAM, batchSize);
-		return namedParameterJdbcTemplate.query(SELECT_STALE_VIEWS, selectParams, new BeanPropertyRowMapper<>(StaleMaterializedView.class));
 	}
 
-	private int removeExistingViews(List<String> viewNames) {
-		final List<String> existingViews = namedParameterJdbcTemplate.queryForList(SELECT_EXISTING_VIEWS_BY_NAME_IN,
-				Map.of(NAMES_PARAM, viewNames),
-				String.class
-		);
-
-		existingViews.forEach(name -> namedParameterJdbcTemplate.update(String.format(DROP_MATERIALIZED_VIEW, name), Map.of()));
-		return existingViews.size();
+	private List<StaleMaterializedView> getStaleViews(LocalDateTime timeBound, Long lastId) {
+		final Map<String, Object> selectParams = Map.of(TIME_BOUND_PARAM, timeBound, ID_PARAM, lastId, BATCH_SIZE_PARAM, batchSize);
+		return namedParameterJdbcTemplate.query(SELECT_STALE_VIEWS, selectParams, new BeanPropertyRowMapper<>(StaleMaterializedView.class));
 	}
 
-	private int removeStaleViews(List<String> viewNames) {
-		return namedParameterJdbcTemplate.update(DELETE_STALE_VIEWS_BY_NAMES, Map.of(NAMES_PARAM, viewNames));
+	/**
+	 * Removes views and their bookkeeping in a single transaction. Counters are incremented by the removed rows and views
+	 * once the transaction is committed.
+	 *
+	 * @return {@code false} if a view is locked, then nothing is removed
+	 */
+	private boolean removeViews(List<String> viewNames, AtomicInteger staleCounter, AtomicInteger existingCounter) {
+		try {
+			final int[] removed = transactionTemplate.execute(status -> {
+				jdbcTemplate.execute(String.format(SET_LOCK_TIMEOUT, lockTimeout));
+				final List<Map<String, Object>> deletedViews = namedParameterJdbcTemplate.queryForList(DELETE_STALE_VIEWS_RETURNING_EXISTING,
+						Map.of(NAMES_PARAM, viewNames)
+				);
+				final List<String> existingViews = deletedViews.stream()
+						.filter(view -> Boolean.TRUE.equals(view.get("existing")))
+						.map(view -> (String) view.get("name"))
+						.distinct()
+						.collect(Collectors.toList());
+				if (!existingViews.isEmpty()) {
+					jdbcTemplate.execute(String.format(DROP_MATERIALIZED_VIEW,
+							existingViews.stream().map(name -> "\"" + name + "\"").collect(Collectors.joining(", "))
+					));
+				}
+				return new int[] { deletedViews.size(), existingViews.size() };
+			});
+			staleCounter.addAndGet(removed[0]);
+			existingCounter.addAndGet(removed[1]);
+			return true;
+		} catch (PessimisticLockingFailureException e) {
+			LOGGER.warn("Unable to drop {} materialized views because of a lock: {}", viewNames.size(), e.getMessage());
+			return false;
+		}
 	}
 }
@@ -6,67 +6,147 @@ import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.util.Strings;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Removing data from storage.
+ * <p>
+ * Files of a chunk are deleted with a single batch call on {@code storageCleanupExecutor}, the next chunk is selected
+ * while the previous one is being deleted. A row is removed from {@code attachment_deletion} only when its files are
+ * deleted, rows with failed deletions stay in the table and are retried by the next run.
  */
 @Component
 public class CleanStorageJob extends BaseJob {
 
-    private static final String ROLLBACK_ERROR_MESSAGE = "Rollback deleting transaction.";
-    private static final String SELECT_AND_DELETE_DATA_CHUNK_QUERY = "DELETE FROM attachment_deletion WHERE id in " +
-            "(SELECT id FROM attachment_deletion ORDER BY id LIMIT ?) RETURNING *";
+    private static final String IDS_PARAM = "ids";
+    private static final String SELECT_DATA_CHUNK_QUERY = "SELECT id, file_id, thumbnail_id FROM attachment_deletion WHERE id > ? " +
+            "ORDER BY id LIMIT ?";
+    private static final String DELETE_DATA_QUERY = "DELETE FROM attachment_deletion WHERE id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final DataStorageService storageService;
+    private final TaskExecutor storageCleanupExecutor;
     private final int chunkSize;
+    private final long timeBudget;
 
-    public CleanStorageJob(JdbcTemplate jdbcTemplate, DataStorageService storageService,
-                           @Value("${rp.environment.variable.clean.storage.chunkSize}") int chunkSize) {
+    public CleanStorageJob(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                           DataStorageService storageService, TaskExecutor storageCleanupExecutor,
+                           @Value("${rp.environment.variable.clean.storage.chunkSize}") int chunkSize,
+                           @Value("${rp.environment.variable.clean.storage.timeBudget}") long timeBudget) {
         super(jdbcTemplate);
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
         this.chunkSize = chunkSize;
         this.storageService = storageService;
+        this.storageCleanupExecutor = storageCleanupExecutor;
+        this.timeBudget = timeBudget;
     }
 
     @Scheduled(cron = "${rp.environment.variable.clean.storage.cron}")
     @SchedulerLock(name = "cleanStorage", lockAtMostFor = "24h")
-    @Transactional
     public void execute() {
         logStart();
-        AtomicInteger counter = new AtomicInteger(0);
-
-        jdbcTemplate.query(SELECT_AND_DELETE_DATA_CHUNK_QUERY, rs -> {
-            try {
-                delete(rs.getString("file_id"), rs.getString("thumbnail_id"));
-                counter.incrementAndGet();
-                while (rs.next()) {
-                    delete(rs.getString("file_id"), rs.getString("thumbnail_id"));
-                    counter.incrementAndGet();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException(ROLLBACK_ERROR_MESSAGE, e);
+        long deadline = System.currentTimeMillis() + timeBudget;
+        int deleted = 0;
+        int failed = 0;
+
+        List<AttachmentDeletion> chunk = selectChunk(0L);
+        CompletableFuture<List<Long>> previousChunk = null;
+        int previousChunkSize = 0;
+        while (!chunk.isEmpty() || previousChunk != null) {
+            CompletableFuture<List<Long>> currentChunk = chunk.isEmpty() ? null : submit(chunk);
+            if (previousChunk != null) {
+                int removed = complete(previousChunk);
+                deleted += removed;
+                failed += previousChunkSize - removed;
             }
-        }, chunkSize);
+            previousChunk = currentChunk;
+            previousChunkSize = chunk.size();
+            boolean lastChunk = chunk.size() < chunkSize || System.currentTimeMillis() >= deadline;
+            chunk = lastChunk ? List.of() : selectChunk(chunk.get(chunk.size() - 1).id);
+        }
+
+        recordProcessed(deleted);
+        logFinish(String.format("deleted %d, failed %d", deleted, failed));
+    }
+
+    private List<AttachmentDeletion> selectChunk(Long lastId) {
+        return jdbcTemplate.query(SELECT_DATA_CHUNK_QUERY,
+                (rs, rowNum) -> new AttachmentDeletion(rs.getLong("id"), rs.getString("file_id"), rs.getString("thumbnail_id")),
+                lastId,
+                chunkSize
+        );
+    }
 
-        logFinish(counter.get());
+    /**
+     * @return Future with ids of rows which files are deleted
+     */
+    private CompletableFuture<List<Long>> submit(List<AttachmentDeletion> chunk) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<String, Boolean> result = storageService.delete(chunk.stream()
+                    .flatMap(row -> Stream.of(row.fileId, row.thumbnailId))
+                    .filter(Strings::isNotBlank)
+                    .map(this::decode)
+                    .collect(Collectors.toList()));
+            return chunk.stream().filter(row -> {
+                boolean deleted = isDeleted(row.fileId, result) && isDeleted(row.thumbnailId, result);
+                if (!deleted) {
+                    LOGGER.warn("Unable to delete files of attachment {}, will retry on the next run", row.id);
+                }
+                return deleted;
+            }).map(row -> row.id).collect(Collectors.toList());
+        }, storageCleanupExecutor);
     }
 
-    private void delete(String fileId, String thumbnailId) throws Exception {
-        if (Strings.isNotBlank(fileId)) {
-            storageService.delete(decode(fileId));
+    /**
+     * Removes rows which files are deleted from the deletion table.
+     *
+     * @return Amount of removed rows
+     */
+    private int complete(CompletableFuture<List<Long>> chunk) {
+        List<Long> ids;
+        try {
+            ids = chunk.join();
+        } catch (CompletionException e) {
+            LOGGER.error("Unable to delete files of the chunk, will retry on the next run", e.getCause());
+            return 0;
         }
-        if (Strings.isNotBlank(thumbnailId)) {
-            storageService.delete(decode(thumbnailId));
+        if (!ids.isEmpty()) {
+            namedParameterJdbcTemplate.update(DELETE_DATA_QUERY, Map.of(IDS_PARAM, ids));
         }
+        return ids.size();
+    }
+
+    private boolean isDeleted(String fileId, Map<String, Boolean> result) {
+        return Strings.isBlank(fileId) || Boolean.TRUE.equals(result.get(decode(fileId)));
     }
 
     private String decode(String data) {
         return StringUtils.isEmpty(data) ? data : new String(Base64.getUrlDecoder().decode(data), StandardCharsets.UTF_8);
     }
+
+    private static class AttachmentDeletion {
+
+        private final Long id;
+        private final String fileId;
+        private final String thumbnailId;
+
+        private AttachmentDeletion(Long id, String fileId, String thumbnailId) {
+            this.id = id;
+            this.fileId = fileId;
+            this.thumbnailId = thumbnailId;
+        }
+    }
 }
@@ -0,0 +1,67 @@
+package com.epam.reportportal.jobs.clean;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Result of a cleanup of several projects, updated concurrently by project tasks.
+ */
+public class CleanupResult {
+
+	private final AtomicLong affected = new AtomicLong();
+	private final AtomicInteger completed = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicInteger timedOut = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+
+	void addAffected(long count) {
+		affected.addAndGet(count);
+	}
+
+	void completed() {
+		completed.incrementAndGet();
+	}
+
+	void failed() {
+		failed.incrementAndGet();
+	}
+
+	void timedOut() {
+		timedOut.incrementAndGet();
+	}
+
+	void skipped(int count) {
+		skipped.addAndGet(count);
+	}
+
+	/**
+	 * @return Amount of deleted or moved rows
+	 */
+	public long getAffected() {
+		return affected.get();
+	}
+
+	public int getCompleted() {
+		return completed.get();
+	}
+
+	public int getFailed() {
+		return failed.get();
+	}
+
+	public int getTimedOut() {
+		return timedOut.get();
+	}
+
+	/**
+	 * @return Amount of projects with nothing to expire since their last cleanup
+	 */
+	public int getSkipped() {
+		return skipped.get();
+	}
+
+	@Override
+	public String toString() {
+		return "affected rows: " + affected + ", projects completed: " + completed + ", failed: " + failed + ", timed out: " + timedOut + ", skipped: " + skipped;
+	}
+}
@@ -0,0 +1,84 @@
+package com.epam.reportportal.jobs.clean;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Checkpoints of chunked deletions, stored in a table, so that a deletion interrupted by a timeout or a restart continues
+ * from its checkpoint. The table is created on the first use, checkpoints which are not updated for a week are removed
+ * then as well.
+ */
+public class DeletionCheckpoints {
+
+	private static final String CREATE_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS deletion_checkpoint (checkpoint_key VARCHAR(256) PRIMARY KEY, "
+			+ "signature TEXT, cutoff TIMESTAMP, last_id BIGINT NOT NULL, updated_at TIMESTAMP NOT NULL DEFAULT now());";
+	private static final String DELETE_OUTDATED_QUERY = "DELETE FROM deletion_checkpoint WHERE updated_at < now() - INTERVAL '7 days';";
+	private static final String SELECT_QUERY = "SELECT signature, cutoff, last_id FROM deletion_checkpoint WHERE checkpoint_key = ?;";
+	private static final String UPSERT_QUERY = "INSERT INTO deletion_checkpoint (checkpoint_key, signature, cutoff, last_id) VALUES (?, ?, ?, ?) "
+			+ "ON CONFLICT (checkpoint_key) DO UPDATE SET signature = excluded.signature, cutoff = excluded.cutoff, "
+			+ "last_id = excluded.last_id, updated_at = now();";
+	private static final String DELETE_QUERY = "DELETE FROM deletion_checkpoint WHERE checkpoint_key = ?;";
+
+	private final JdbcTemplate jdbcTemplate;
+	private volatile boolean tableCreated;
+
+	public DeletionCheckpoints(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * @return Checkpoint of the key, or {@code null}
+	 */
+	Checkpoint find(String checkpointKey) {
+		createTable();
+		final List<Checkpoint> checkpoints = jdbcTemplate.query(SELECT_QUERY, (rs, rowNum) -> {
+			final Timestamp cutoff = rs.getTimestamp("cutoff");
+			return new Checkpoint(rs.getString("signature"), cutoff == null ? null : cutoff.toLocalDateTime(), rs.getLong("last_id"));
+		}, checkpointKey);
+		return checkpoints == null || checkpoints.isEmpty() ? null : checkpoints.get(0);
+	}
+
+	void save(String checkpointKey, Checkpoint checkpoint) {
+		createTable();
+		jdbcTemplate.update(UPSERT_QUERY,
+				checkpointKey,
+				checkpoint.signature,
+				checkpoint.cutoff == null ? null : Timestamp.valueOf(checkpoint.cutoff),
+				checkpoint.lastId
+		);
+	}
+
+	void remove(String checkpointKey) {
+		createTable();
+		jdbcTemplate.update(DELETE_QUERY, checkpointKey);
+	}
+
+	private void createTable() {
+		if (!tableCreated) {
+			jdbcTemplate.execute(CREATE_TABLE_QUERY);
+			jdbcTemplate.update(DELETE_OUTDATED_QUERY);
+			tableCreated = true;
+		}
+	}
+
+	/**
+	 * Rows up to the last id which match the deletion are deleted.
+	 */
+	static final class Checkpoint {
+
+		// arguments of a deletion of fixed rows, resumed only by the same deletion
+		final String signature;
+		// cutoff of a deletion of expired rows, rows up to the last id are deleted up to the cutoff
+		final LocalDateTime cutoff;
+		final long lastId;
+
+		Checkpoint(String signature, LocalDateTime cutoff, long lastId) {
+			this.signature = signature;
+			this.cutoff = cutoff;
+			this.lastId = lastId;
+		}
+	}
+}
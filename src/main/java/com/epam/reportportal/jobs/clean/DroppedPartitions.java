@@ -0,0 +1,33 @@
+package com.epam.reportportal.jobs.clean;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Partitions dropped by {@link PartitionRetention}.
+ */
+public class DroppedPartitions {
+
+	private long rows;
+	private final Set<Long> projectIds = new HashSet<>();
+
+	void add(long rows, Collection<Long> projectIds) {
+		this.rows += rows;
+		this.projectIds.addAll(projectIds);
+	}
+
+	/**
+	 * @return Estimated amount of rows of dropped partitions
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return Projects which had rows in dropped partitions
+	 */
+	public Set<Long> getProjectIds() {
+		return projectIds;
+	}
+}
@@ -0,0 +1,55 @@
+package com.epam.reportportal.jobs.clean;
+
+import java.time.LocalDateTime;
+
+/**
+ * Rows of a table which expire by a time column, selected by a window of cutoffs {@code (from, to]} of a project.
+ * Without the lower bound the window contains all rows up to the cutoff.
+ */
+public class ExpirableRows {
+
+	private static final String CONDITION = "project_id = ? AND %1$s <= ?::TIMESTAMP";
+	private static final String WINDOW_CONDITION = "project_id = ? AND %1$s > ?::TIMESTAMP AND %1$s <= ?::TIMESTAMP";
+	private static final String EXISTS_QUERY = "SELECT EXISTS (SELECT 1 FROM %s WHERE %s);";
+	private static final String OLDEST_AFTER_QUERY = "SELECT min(%2$s) FROM %1$s WHERE project_id = ? AND %2$s > ?::TIMESTAMP;";
+
+	private final String table;
+	private final String timeColumn;
+
+	public ExpirableRows(String table, String timeColumn) {
+		this.table = table;
+		this.timeColumn = timeColumn;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * @param from Exclusive lower bound, may be {@code null}
+	 * @return SQL condition of rows of the window, its arguments are {@link #args(Long, LocalDateTime, LocalDateTime)}
+	 */
+	public String condition(LocalDateTime from) {
+		return String.format(from == null ? CONDITION : WINDOW_CONDITION, timeColumn);
+	}
+
+	/**
+	 * @param from Exclusive lower bound, may be {@code null}
+	 * @param to   Inclusive cutoff
+	 * @return Arguments of {@link #condition(LocalDateTime)}
+	 */
+	public Object[] args(Long projectId, LocalDateTime from, LocalDateTime to) {
+		return from == null ? new Object[] { projectId, to } : new Object[] { projectId, from, to };
+	}
+
+	String existsQuery(LocalDateTime from) {
+		return String.format(EXISTS_QUERY, table, condition(from));
+	}
+
+	/**
+	 * @return Query of the time of the oldest row of a project after a cutoff, with the project id and cutoff parameters
+	 */
+	String oldestAfterQuery() {
+		return String.format(OLDEST_AFTER_QUERY, table, timeColumn);
+	}
+}
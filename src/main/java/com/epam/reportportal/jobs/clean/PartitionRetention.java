@@ -0,0 +1,173 @@
+package com.epam.reportportal.jobs.clean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Drops expired partitions of a table partitioned by range of a timestamp column, instead of deleting their rows.
+ * <p>
+ * A partition is dropped only when its upper bound is not later than the retention cutoff of every project, and all its
+ * rows belong to projects with a retention. Every other partition is left to the row-level deletion, which is narrowed
+ * to the boundary partitions by partition pruning. Nothing is done for tables which are not partitioned this way.
+ */
+public class PartitionRetention {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PartitionRetention.class);
+
+	private static final String SELECT_PARTITIONS_QUERY = "SELECT c.oid::REGCLASS::TEXT AS name, pg_get_expr(c.relpartbound, c.oid) AS bound, "
+			+ "greatest(c.reltuples, 0)::BIGINT AS row_estimate FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+			+ "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ? AND p.relkind = 'p' AND pg_get_partkeydef(p.oid) = ?;";
+	private static final String SELECT_PROJECT_IDS_QUERY = "SELECT DISTINCT project_id FROM %s;";
+	private static final String EXISTS_NOT_RETAINED_QUERY =
+			"SELECT EXISTS (SELECT 1 FROM %s WHERE project_id IS NULL OR project_id <> ALL(?::BIGINT[]));";
+	private static final String SET_LOCK_TIMEOUT = "SET LOCAL lock_timeout = %d";
+	private static final String LOCK_PARTITION = "LOCK TABLE %s IN SHARE MODE";
+	private static final String DETACH_PARTITION = "ALTER TABLE %s DETACH PARTITION %s";
+	private static final String DROP_PARTITION = "DROP TABLE %s";
+
+	private static final String PARTITION_KEY = "RANGE (%s)";
+	// upper bound of a range partition with an optional offset of timestamptz, MAXVALUE and default partitions don't match
+	private static final Pattern UPPER_BOUND_PATTERN = Pattern.compile(
+			"TO \\('(\\d{4}-\\d{2}-\\d{2})(?:[ T](\\d{2}:\\d{2}:\\d{2}))?(?:\\.\\d+)?([+-]\\d{2}(?::\\d{2})?)?'\\)");
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final long lockTimeout;
+
+	/**
+	 * @param lockTimeout Max wait for the lock of the table when a partition is detached, milliseconds
+	 */
+	public PartitionRetention(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, long lockTimeout) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.lockTimeout = lockTimeout;
+	}
+
+	/**
+	 * @param table      Partitioned table
+	 * @param timeColumn Partition key column
+	 * @param retentions Retention periods by project, rows of other projects are kept forever
+	 * @param beforeDrop Statement executed in the transaction of the drop, with {@code %s} for the partition name, may be {@code null}
+	 * @return Dropped partitions
+	 */
+	public DroppedPartitions dropExpired(String table, String timeColumn, Map<Long, Duration> retentions, String beforeDrop) {
+		final DroppedPartitions dropped = new DroppedPartitions();
+		final Duration retention = retentions.values().stream().max(Duration::compareTo).orElse(null);
+		if (retention == null) {
+			return dropped;
+		}
+		final LocalDateTime cutoff = LocalDateTime.now(ZoneOffset.UTC).minus(retention);
+		final List<Partition> partitions = jdbcTemplate.query(SELECT_PARTITIONS_QUERY,
+				(rs, rowNum) -> new Partition(rs.getString("name"), rs.getString("bound"), rs.getLong("row_estimate")),
+				table,
+				String.format(PARTITION_KEY, timeColumn)
+		);
+		for (Partition partition : partitions) {
+			final LocalDateTime upperBound = parseUpperBound(partition.bound);
+			if (upperBound == null || upperBound.isAfter(cutoff)) {
+				continue;
+			}
+			drop(table, partition, retentions.keySet(), beforeDrop, dropped);
+		}
+		return dropped;
+	}
+
+	/**
+	 * Projects of the partition are found by a scan without a lock, and checked again under a lock which keeps rows from
+	 * changing until the drop, so that a row of a project kept forever inserted in between is never dropped. Rows are copied,
+	 * if needed, under the same lock.
+	 *
+	 * @param retainedProjectIds Projects with a retention
+	 */
+	private void drop(String table, Partition partition, Set<Long> retainedProjectIds, String beforeDrop, DroppedPartitions dropped) {
+		final Set<Long> partitionProjectIds = new HashSet<>();
+		final Boolean isDropped;
+		try {
+			jdbcTemplate.query(String.format(SELECT_PROJECT_IDS_QUERY, partition.name), rs -> {
+				final long projectId = rs.getLong(1);
+				partitionProjectIds.add(rs.wasNull() ? null : projectId);
+			});
+			if (!retainedProjectIds.containsAll(partitionProjectIds)) {
+				LOGGER.info("Partition {} has rows of projects which are kept forever, its rows are deleted one by one", partition.name);
+				return;
+			}
+			final String retainedIds = retainedProjectIds.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+			isDropped = transactionTemplate.execute(status -> {
+				jdbcTemplate.execute(String.format(SET_LOCK_TIMEOUT, lockTimeout));
+				jdbcTemplate.execute(String.format(LOCK_PARTITION, partition.name));
+				if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(String.format(EXISTS_NOT_RETAINED_QUERY, partition.name),
+						Boolean.class,
+						retainedIds
+				))) {
+					return false;
+				}
+				if (beforeDrop != null) {
+					jdbcTemplate.update(String.format(beforeDrop, partition.name));
+				}
+				jdbcTemplate.execute(String.format(DETACH_PARTITION, table, partition.name));
+				jdbcTemplate.execute(String.format(DROP_PARTITION, partition.name));
+				return true;
+			});
+		} catch (DataAccessException e) {
+			LOGGER.warn("Unable to drop partition {}, its rows are deleted one by one", partition.name, e);
+			return;
+		}
+		if (Boolean.TRUE.equals(isDropped)) {
+			LOGGER.info("Dropped partition {} with about {} rows", partition.name, partition.rowEstimate);
+			dropped.add(partition.rowEstimate, partitionProjectIds);
+		} else {
+			LOGGER.info("Partition {} has got rows of projects which are kept forever, its rows are deleted one by one", partition.name);
+		}
+	}
+
+	/**
+	 * @param bound Partition bound expression
+	 * @return Upper bound in UTC, or {@code null} if the partition has no upper bound of a timestamp
+	 */
+	static LocalDateTime parseUpperBound(String bound) {
+		final Matcher matcher = bound == null ? null : UPPER_BOUND_PATTERN.matcher(bound);
+		if (matcher == null || !matcher.find()) {
+			return null;
+		}
+		try {
+			final LocalDate date = LocalDate.parse(matcher.group(1));
+			final LocalDateTime upperBound = matcher.group(2) == null ? date.atStartOfDay() : date.atTime(LocalTime.parse(matcher.group(2)));
+			if (matcher.group(3) == null) {
+				return upperBound;
+			}
+			return upperBound.atOffset(ZoneOffset.of(matcher.group(3))).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+		} catch (DateTimeException e) {
+			return null;
+		}
+	}
+
+	private static final class Partition {
+
+		private final String name;
+		private final String bound;
+		private final long rowEstimate;
+
+		private Partition(String name, String bound, long rowEstimate) {
+			this.name = name;
+			this.bound = bound;
+			this.rowEstimate = rowEstimate;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.epam.reportportal.jobs.clean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static java.time.Duration.ofSeconds;
+
+/**
+ * Retention periods of projects by attribute, shared by cleanup jobs.
+ * <p>
+ * Periods of an attribute are loaded at most once per {@code refreshInterval}, or after {@link #invalidate()}, changed
+ * projects are logged on reload. Periods are loaded outside of the cache lock, concurrent loads of an attribute keep the
+ * latest one. A bad attribute value is logged once, until it is changed.
+ */
+@Component
+public class RetentionPolicies {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RetentionPolicies.class);
+
+	private static final String SELECT_PROJECTS_ATTRIBUTES = "SELECT pa.project_id AS id, pa.value AS attribute_value FROM project_attribute pa "
+			+ "JOIN attribute a ON pa.attribute_id = a.id WHERE a.name = ? AND pa.value != '0' AND TRIM(pa.value) != '';";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final long refreshInterval;
+	private final Map<String, Policies> policies = new ConcurrentHashMap<>();
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * @param refreshInterval Max age of loaded periods, milliseconds, 0 loads them on every request
+	 */
+	public RetentionPolicies(JdbcTemplate jdbcTemplate,
+							 @Value("${rp.environment.variable.clean.retention.refreshInterval}") long refreshInterval) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.refreshInterval = refreshInterval;
+	}
+
+	/**
+	 * @param attributeKey Name of the project attribute with a retention period in seconds
+	 * @return Unmodifiable retention periods by project id
+	 */
+	public Map<Long, Duration> get(String attributeKey) {
+		final Policies cached = policies.get(attributeKey);
+		if (cached != null && cached.generation == generation.get() && System.currentTimeMillis() - cached.loadedAt < refreshInterval) {
+			return cached.periods;
+		}
+		final Policies loaded = load(attributeKey, cached);
+		return policies.merge(attributeKey, loaded, RetentionPolicies::latest).periods;
+	}
+
+	/**
+	 * @return Currently loaded retention periods by attribute
+	 */
+	public Map<String, Map<Long, Duration>> getLoaded() {
+		return policies.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().periods));
+	}
+
+	/**
+	 * Makes all attributes reload on the next request, e.g. right after they are changed. A load which has started before
+	 * is not used after the next request.
+	 */
+	public void invalidate() {
+		generation.incrementAndGet();
+	}
+
+	private Policies load(String attributeKey, Policies previous) {
+		final long loadGeneration = generation.get();
+		final long loadedAt = System.currentTimeMillis();
+		final Set<String> reportedBadValues = previous == null ? Collections.emptySet() : previous.badValues;
+		final Set<String> badValues = new HashSet<>();
+		final Map<Long, Duration> periods = jdbcTemplate.query(SELECT_PROJECTS_ATTRIBUTES, rs -> {
+			Map<Long, Duration> result = new HashMap<>();
+			while (rs.next()) {
+				long projectId = rs.getLong("id");
+				String attributeValue = rs.getString("attribute_value");
+				try {
+					result.put(projectId, ofSeconds(Long.parseLong(attributeValue)));
+				} catch (NumberFormatException e) {
+					String badValue = projectId + ":" + attributeValue;
+					badValues.add(badValue);
+					if (!reportedBadValues.contains(badValue)) {
+						LOGGER.error("Bad attribute value format for {} of project {}. Expected a number, actual is {}",
+								attributeKey,
+								projectId,
+								attributeValue
+						);
+					}
+				}
+			}
+			return result;
+		}, attributeKey);
+		final Map<Long, Duration> loaded = periods == null ? Collections.emptyMap() : Collections.unmodifiableMap(periods);
+		if (previous != null && !previous.periods.equals(loaded)) {
+			LOGGER.info("Retention {} has changed for projects {}", attributeKey, changedProjects(previous.periods, loaded));
+		}
+		// unchanged periods keep the same instance
+		return new Policies(previous != null && previous.periods.equals(loaded) ? previous.periods : loaded,
+				badValues,
+				loadGeneration,
+				loadedAt
+		);
+	}
+
+	private static Policies latest(Policies current, Policies next) {
+		if (current.generation != next.generation) {
+			return current.generation > next.generation ? current : next;
+		}
+		return current.loadedAt > next.loadedAt ? current : next;
+	}
+
+	private static Set<Long> changedProjects(Map<Long, Duration> previous, Map<Long, Duration> current) {
+		final Set<Long> projectIds = new HashSet<>(previous.keySet());
+		projectIds.addAll(current.keySet());
+		projectIds.removeIf(projectId -> Objects.equals(previous.get(projectId), current.get(projectId)));
+		return projectIds;
+	}
+
+	private static final class Policies {
+
+		private final Map<Long, Duration> periods;
+		private final Set<String> badValues;
+		private final long generation;
+		private final long loadedAt;
+
+		private Policies(Map<Long, Duration> periods, Set<String> badValues, long generation, long loadedAt) {
+			this.periods = periods;
+			this.badValues = badValues;
+			this.generation = generation;
+			this.loadedAt = loadedAt;
+		}
+	}
+}
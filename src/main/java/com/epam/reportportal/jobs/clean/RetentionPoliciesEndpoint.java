@@ -0,0 +1,35 @@
+package com.epam.reportportal.jobs.clean;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Retention periods cached for cleanup jobs, changed periods are reloaded after the refresh interval, the delete operation
+ * makes them reload on the next run. It is not exposed over HTTP unless it is added to
+ * {@code management.endpoints.web.exposure.include}, which is meant for a secured management port only.
+ */
+@Component
+@Endpoint(id = "retentionpolicies")
+public class RetentionPoliciesEndpoint {
+
+	private final RetentionPolicies retentionPolicies;
+
+	public RetentionPoliciesEndpoint(RetentionPolicies retentionPolicies) {
+		this.retentionPolicies = retentionPolicies;
+	}
+
+	@ReadOperation
+	public Map<String, Map<Long, Duration>> policies() {
+		return retentionPolicies.getLoaded();
+	}
+
+	@DeleteOperation
+	public void invalidate() {
+		retentionPolicies.invalidate();
+	}
+}
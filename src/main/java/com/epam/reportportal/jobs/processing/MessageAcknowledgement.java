@@ -0,0 +1,58 @@
+package com.epam.reportportal.jobs.processing;
+
+import com.epam.reportportal.calculation.FlushCallback;
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Acknowledges the message once its log is saved, or returns it to the queue if saving has failed.
+ * <p>
+ * Callbacks come from flush lane threads, so the message is settled only by the first of them, and calls of a channel
+ * are serialized by the channel itself, which is not meant for concurrent use.
+ */
+class MessageAcknowledgement implements FlushCallback {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageAcknowledgement.class);
+
+    private final Channel channel;
+    private final long deliveryTag;
+    private final AtomicBoolean settled = new AtomicBoolean();
+
+    MessageAcknowledgement(Channel channel, long deliveryTag) {
+        this.channel = channel;
+        this.deliveryTag = deliveryTag;
+    }
+
+    @Override
+    public void onFlushed() {
+        if (!settled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            synchronized (channel) {
+                channel.basicAck(deliveryTag, false);
+            }
+        } catch (IOException e) {
+            // the message is redelivered when the channel is closed
+            LOGGER.warn("Unable to acknowledge message {}", deliveryTag, e);
+        }
+    }
+
+    @Override
+    public void onFailed(Exception cause) {
+        if (!settled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            synchronized (channel) {
+                channel.basicNack(deliveryTag, false, true);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to reject message {}", deliveryTag, e);
+        }
+    }
+}
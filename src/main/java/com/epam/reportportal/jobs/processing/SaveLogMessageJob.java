@@ -2,14 +2,20 @@ package com.epam.reportportal.jobs.processing;
 
 import com.epam.reportportal.log.LogMessage;
 import com.epam.reportportal.log.LogProcessing;
+import com.rabbitmq.client.Channel;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * Log consumer.
+ * Messages are acknowledged only after their logs are saved, so logs buffered in memory are redelivered
+ * if the service goes down.
  * @author <a href="mailto:maksim_antonov@epam.com">Maksim Antonov</a>
  */
 @Service
@@ -22,9 +28,26 @@ public class SaveLogMessageJob {
     }
 
     @RabbitListener(queues = LOG_MESSAGE_SAVING_QUEUE_NAME, containerFactory = "processingRabbitListenerContainerFactory")
-    public void execute(@Payload LogMessage logMessage) {
-        if (Objects.nonNull(logMessage)) {
-            this.logProcessing.add(logMessage);
+    public void execute(List<Message<LogMessage>> messages, Channel channel) {
+        // a single acknowledgement per message, so that it is settled once whoever settles it
+        List<MessageAcknowledgement> acknowledgements = messages.stream()
+                .map(message -> new MessageAcknowledgement(channel, message.getHeaders().get(AmqpHeaders.DELIVERY_TAG, Long.class)))
+                .collect(Collectors.toList());
+        for (int i = 0; i < messages.size(); i++) {
+            Message<LogMessage> message = messages.get(i);
+            MessageAcknowledgement acknowledgement = acknowledgements.get(i);
+            try {
+                LogMessage logMessage = message.getPayload();
+                if (Objects.nonNull(logMessage)) {
+                    this.logProcessing.add(logMessage, acknowledgement);
+                } else {
+                    acknowledgement.onFlushed();
+                }
+            } catch (RuntimeException e) {
+                // the container doesn't reject messages in manual mode, so the rest of the batch is returned to the queue here
+                acknowledgements.subList(i, acknowledgements.size()).forEach(rest -> rest.onFailed(e));
+                throw e;
+            }
         }
     }
 }
@@ -0,0 +1,78 @@
+package com.epam.reportportal.jobs.storage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Amount of attachments deleted by cleanup jobs by project, since the last incremental calculation of allocated storage.
+ * <p>
+ * Deletions are recorded in a table after they are committed, so the calculation sees deletions made by any instance,
+ * whichever of them holds the lock of the calculation. The table is created on the first use. Deletions made by the API,
+ * as well as the ones not recorded because of a failure right after the commit, are picked up by the reconciliation only.
+ */
+@Component
+public class AllocatedStorageChanges {
+
+	private static final String CREATE_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS allocated_storage_change "
+			+ "(project_id BIGINT PRIMARY KEY, deleted_attachments BIGINT NOT NULL);";
+	private static final String UPSERT_QUERY = "INSERT INTO allocated_storage_change (project_id, deleted_attachments) VALUES (?, ?) "
+			+ "ON CONFLICT (project_id) DO UPDATE SET deleted_attachments = CASE "
+			+ "WHEN allocated_storage_change.deleted_attachments < 0 OR excluded.deleted_attachments < 0 THEN -1 "
+			+ "ELSE allocated_storage_change.deleted_attachments + excluded.deleted_attachments END;";
+	private static final String DRAIN_QUERY = "DELETE FROM allocated_storage_change RETURNING project_id, deleted_attachments;";
+
+	private final JdbcTemplate jdbcTemplate;
+	private volatile boolean tableCreated;
+
+	public AllocatedStorageChanges(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * @param count Amount of deleted attachments of the project, -1 if it is unknown, e.g. for a cascade deletion
+	 */
+	public void recordDeletion(Long projectId, long count) {
+		if (count != 0) {
+			createTable();
+			jdbcTemplate.update(UPSERT_QUERY, projectId, count);
+		}
+	}
+
+	public void recordDeletion(Collection<Long> projectIds) {
+		if (!projectIds.isEmpty()) {
+			createTable();
+			final List<Object[]> args = projectIds.stream().map(projectId -> new Object[] { projectId, -1L }).collect(Collectors.toList());
+			jdbcTemplate.batchUpdate(UPSERT_QUERY, args);
+		}
+	}
+
+	/**
+	 * Takes all recorded deletions, they are recorded again by {@link #restore(Map)} if the calculation fails.
+	 *
+	 * @return Amount of deleted attachments by project
+	 */
+	public Map<Long, Long> drain() {
+		createTable();
+		final Map<Long, Long> drained = new HashMap<>();
+		jdbcTemplate.query(DRAIN_QUERY, (RowCallbackHandler) rs -> drained.put(rs.getLong("project_id"), rs.getLong("deleted_attachments")));
+		return drained;
+	}
+
+	public void restore(Map<Long, Long> deletions) {
+		deletions.forEach(this::recordDeletion);
+	}
+
+	private void createTable() {
+		if (!tableCreated) {
+			jdbcTemplate.execute(CREATE_TABLE_QUERY);
+			tableCreated = true;
+		}
+	}
+}
@@ -3,15 +3,37 @@ package com.epam.reportportal.jobs.storage;
 import com.epam.reportportal.jobs.BaseJob;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
+ * Calculates storage allocated by attachments of every project.
+ * <p>
+ * In the {@code incremental} mode only projects with attachments created since the previous run are recalculated, and the
+ * value of a project is updated only if it has changed. Projects of attachments deleted by cleanup jobs are recalculated by
+ * the deletions recorded in {@link AllocatedStorageChanges}. Other deletions, and attachments committed out of id order,
+ * are picked up by the reconciliation cron, which recalculates all projects.
+ * <p>
+ * In the {@code aggregate} mode totals of all projects are calculated by a single grouped query, and only changed values
+ * are written back by batched updates.
+ *
  * @author <a href="mailto:ivan_budayeu@epam.com">Ivan Budayeu</a>
  */
 @Service
@@ -22,25 +44,152 @@ public class CalculateAllocatedStorageJob extends BaseJob {
 			"SELECT coalesce(sum(file_size), 0) FROM attachment WHERE attachment.project_id = ?";
 	private static final String UPDATE_ALLOCATED_STORAGE_BY_PROJECT_ID_QUERY =
 			"UPDATE project SET allocated_storage = ? WHERE id = ?";
+	private static final String UPDATE_CHANGED_ALLOCATED_STORAGE_BY_PROJECT_ID_QUERY =
+			"UPDATE project SET allocated_storage = ? WHERE id = ? AND allocated_storage IS DISTINCT FROM ?";
+	private static final String SELECT_MAX_ATTACHMENT_ID_QUERY = "SELECT coalesce(max(id), 0) FROM attachment";
+	private static final String SELECT_PROJECT_IDS_WITH_NEW_ATTACHMENTS_QUERY =
+			"SELECT DISTINCT project_id FROM attachment WHERE id > ? AND id <= ? AND project_id IS NOT NULL";
+
+	private static final String SELECT_CHANGED_ALLOCATED_STORAGE_QUERY = "SELECT p.id, coalesce(a.total, 0) AS total FROM project p "
+			+ "LEFT JOIN (SELECT project_id, sum(file_size) AS total FROM attachment GROUP BY project_id) a ON a.project_id = p.id "
+			+ "WHERE p.allocated_storage IS DISTINCT FROM coalesce(a.total, 0)";
+	private static final String UPDATE_ALLOCATED_STORAGE_FROM_VALUES_QUERY = "UPDATE project p SET allocated_storage = v.total "
+			+ "FROM (VALUES %s) AS v(id, total) WHERE p.id = v.id AND p.allocated_storage IS DISTINCT FROM v.total";
+	private static final String VALUES_ROW = "(?::BIGINT, ?::BIGINT)";
+
+	static final String PROJECT_MODE = "project";
+	static final String INCREMENTAL_MODE = "incremental";
+	static final String AGGREGATE_MODE = "aggregate";
 
 	private final TaskExecutor projectAllocatedStorageExecutor;
+	private final TransactionTemplate readOnlyTransactionTemplate;
+	private final String mode;
+	private final int fetchSize;
+	private final int updateChunkSize;
+
+	// watermark of the incremental mode, null until the first reconciliation
+	private Long attachmentWatermark;
+	private AllocatedStorageChanges allocatedStorageChanges;
+	private volatile boolean reconciliationRequested;
 
 	@Autowired
-	public CalculateAllocatedStorageJob(TaskExecutor projectAllocatedStorageExecutor, JdbcTemplate jdbcTemplate) {
+	public CalculateAllocatedStorageJob(TaskExecutor projectAllocatedStorageExecutor, JdbcTemplate jdbcTemplate,
+			PlatformTransactionManager transactionManager, @Value("${rp.environment.variable.storage.project.mode}") String mode,
+			@Value("${rp.environment.variable.storage.project.fetchSize}") int fetchSize,
+			@Value("${rp.environment.variable.storage.project.updateChunkSize}") int updateChunkSize) {
 		super(jdbcTemplate);
 		this.projectAllocatedStorageExecutor = projectAllocatedStorageExecutor;
+		this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+		this.readOnlyTransactionTemplate.setReadOnly(true);
+		this.mode = mode;
+		this.fetchSize = fetchSize;
+		this.updateChunkSize = updateChunkSize;
+	}
+
+	@Autowired(required = false)
+	public void setAllocatedStorageChanges(AllocatedStorageChanges allocatedStorageChanges) {
+		this.allocatedStorageChanges = allocatedStorageChanges;
 	}
 
 	@Scheduled(cron = "${rp.environment.variable.storage.project.cron}")
 	@SchedulerLock(name = "calculateAllocatedStorage", lockAtMostFor = "24h")
 	public void calculate() {
 		logStart();
+		if (INCREMENTAL_MODE.equals(mode)) {
+			logFinish(calculateIncrementally());
+			return;
+		}
+		if (AGGREGATE_MODE.equals(mode)) {
+			final long start = System.currentTimeMillis();
+			final int updated = calculateByAggregation();
+			recordProcessed(updated);
+			logFinish(String.format("updated %d projects in %d ms", updated, System.currentTimeMillis() - start));
+			return;
+		}
 		CompletableFuture.allOf(getProjectIds().stream()
 				.map(id -> CompletableFuture.runAsync(() -> updateAllocatedStorage(id), projectAllocatedStorageExecutor))
 				.toArray(CompletableFuture[]::new)).join();
 		logFinish();
 	}
 
+	/**
+	 * Makes the next incremental calculation recalculate all projects.
+	 */
+	@Scheduled(cron = "${rp.environment.variable.storage.project.reconciliationCron}")
+	public void requestReconciliation() {
+		reconciliationRequested = true;
+	}
+
+	/**
+	 * @return Amount of updated projects
+	 */
+	private int calculateIncrementally() {
+		// changes are taken before the calculation, so that changes made during it are handled by the next run
+		final Map<Long, Long> deletions = allocatedStorageChanges == null ? Map.of() : allocatedStorageChanges.drain();
+		final Long maxAttachmentId = jdbcTemplate.queryForObject(SELECT_MAX_ATTACHMENT_ID_QUERY, Long.class);
+
+		final Collection<Long> projectIds;
+		try {
+			if (reconciliationRequested || attachmentWatermark == null) {
+				reconciliationRequested = false;
+				LOGGER.info("Reconciliation of allocated storage of all projects");
+				projectIds = getProjectIds();
+			} else {
+				projectIds = new TreeSet<>(deletions.keySet());
+				if (maxAttachmentId > attachmentWatermark) {
+					projectIds.addAll(jdbcTemplate.queryForList(SELECT_PROJECT_IDS_WITH_NEW_ATTACHMENTS_QUERY,
+							Long.class,
+							attachmentWatermark,
+							maxAttachmentId
+					));
+				}
+			}
+			final int updated = updateChangedAllocatedStorage(projectIds);
+			attachmentWatermark = maxAttachmentId;
+			return updated;
+		} catch (RuntimeException e) {
+			if (allocatedStorageChanges != null) {
+				allocatedStorageChanges.restore(deletions);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return Amount of updated projects
+	 */
+	private int calculateByAggregation() {
+		// the cursor is used only with a disabled auto-commit, otherwise the whole result is fetched at once
+		final List<Long[]> changes = readOnlyTransactionTemplate.execute(status -> {
+			final List<Long[]> result = new ArrayList<>();
+			jdbcTemplate.query(con -> {
+				final PreparedStatement statement = con.prepareStatement(SELECT_CHANGED_ALLOCATED_STORAGE_QUERY);
+				statement.setFetchSize(fetchSize);
+				return statement;
+			}, (RowCallbackHandler) rs -> result.add(new Long[] { rs.getLong("id"), rs.getLong("total") }));
+			return result;
+		});
+
+		int updated = 0;
+		for (int from = 0; from < changes.size(); from += updateChunkSize) {
+			final List<Long[]> chunk = changes.subList(from, Math.min(from + updateChunkSize, changes.size()));
+			final Object[] args = chunk.stream().flatMap(Arrays::stream).toArray();
+			final String values = String.join(",", Collections.nCopies(chunk.size(), VALUES_ROW));
+			updated += jdbcTemplate.update(String.format(UPDATE_ALLOCATED_STORAGE_FROM_VALUES_QUERY, values), args);
+		}
+		return updated;
+	}
+
+	private int updateChangedAllocatedStorage(Collection<Long> projectIds) {
+		final List<CompletableFuture<Integer>> updates = projectIds.stream()
+				.map(id -> CompletableFuture.supplyAsync(() -> {
+					final Long allocatedStorage = getAllocatedStorage(id);
+					return jdbcTemplate.update(UPDATE_CHANGED_ALLOCATED_STORAGE_BY_PROJECT_ID_QUERY, allocatedStorage, id, allocatedStorage);
+				}, projectAllocatedStorageExecutor))
+				.collect(Collectors.toList());
+		return updates.stream().mapToInt(CompletableFuture::join).sum();
+	}
+
 	private List<Long> getProjectIds() {
 		return jdbcTemplate.queryForList(SELECT_PROJECT_IDS_QUERY, Long.class);
 	}
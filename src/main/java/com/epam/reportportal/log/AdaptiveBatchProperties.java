@@ -0,0 +1,111 @@
+package com.epam.reportportal.log;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounds and targets of the adaptive log batch size and timeout.
+ * The fixed batch size and timeout are used as the initial values.
+ */
+@Component
+@ConfigurationProperties(prefix = "rp.processing.log.adaptive")
+public class AdaptiveBatchProperties {
+
+    private boolean enabled;
+
+    private int minBatchSize = 100;
+
+    /**
+     * Must be not greater than the buffer size.
+     */
+    private int maxBatchSize = 3000;
+
+    /**
+     * Milliseconds.
+     */
+    private long minBatchTimeout = 50;
+
+    /**
+     * Milliseconds.
+     */
+    private long maxBatchTimeout = 1000;
+
+    /**
+     * Max time of saving a batch, milliseconds.
+     */
+    private long targetLatency = 1000;
+
+    /**
+     * Max uncompressed size of bulk requests of a batch, bytes.
+     */
+    private long targetPayloadSize = 10 * 1024 * 1024;
+
+    /**
+     * Amount of recent flushes the 99th percentile of latency is compared with the target latency of.
+     */
+    private int latencyWindow = 100;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    public void setMinBatchSize(int minBatchSize) {
+        this.minBatchSize = minBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getMinBatchTimeout() {
+        return minBatchTimeout;
+    }
+
+    public void setMinBatchTimeout(long minBatchTimeout) {
+        this.minBatchTimeout = minBatchTimeout;
+    }
+
+    public long getMaxBatchTimeout() {
+        return maxBatchTimeout;
+    }
+
+    public void setMaxBatchTimeout(long maxBatchTimeout) {
+        this.maxBatchTimeout = maxBatchTimeout;
+    }
+
+    public long getTargetLatency() {
+        return targetLatency;
+    }
+
+    public void setTargetLatency(long targetLatency) {
+        this.targetLatency = targetLatency;
+    }
+
+    public long getTargetPayloadSize() {
+        return targetPayloadSize;
+    }
+
+    public void setTargetPayloadSize(long targetPayloadSize) {
+        this.targetPayloadSize = targetPayloadSize;
+    }
+
+    public int getLatencyWindow() {
+        return latencyWindow;
+    }
+
+    public void setLatencyWindow(int latencyWindow) {
+        this.latencyWindow = latencyWindow;
+    }
+}
@@ -1,13 +1,34 @@
 package com.epam.reportportal.log;
 
+import com.epam.reportportal.calculation.AdaptiveBatchController;
 import com.epam.reportportal.calculation.BatchProcessing;
+import com.epam.reportportal.calculation.FlushCallback;
+import com.epam.reportportal.calculation.FlushTrigger;
+import com.epam.reportportal.elastic.BulkBodyWriter;
+import com.epam.reportportal.elastic.BulkIndexingException;
+import com.epam.reportportal.elastic.BulkResult;
 import com.epam.reportportal.elastic.SimpleElasticSearchClient;
+import com.epam.reportportal.log.spill.LogSpillStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.concurrent.DefaultManagedTaskScheduler;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import javax.annotation.PostConstruct;
+
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Batch processing for log.
@@ -16,19 +37,206 @@ import java.util.List;
 @Component
 public class LogProcessing extends BatchProcessing<LogMessage> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogProcessing.class);
+
+    private static final String TRIGGER_TAG = "trigger";
+
     private final SimpleElasticSearchClient simpleElasticSearchClient;
+    private final LogSpillStore logSpillStore;
+    private final AdaptiveBatchController controller;
+    private final OversizedLogPolicy oversizedLogPolicy;
+    private final int maxMessageSize;
+    private final Map<FlushTrigger, DistributionSummary> flushedBatches = new EnumMap<>(FlushTrigger.class);
+    private final Counter spilledLogs;
 
+    @Autowired
     public LogProcessing(SimpleElasticSearchClient simpleElasticSearchClient,
                          @Value("${rp.processing.log.maxBatchSize}") int batchSize,
-                         @Value("${rp.processing.log.maxBatchTimeout}") int timeout) {
-        super(batchSize, timeout, new DefaultManagedTaskScheduler());
+                         @Value("${rp.processing.log.maxBatchTimeout}") int timeout,
+                         @Value("${rp.processing.log.maxBufferSize}") int bufferSize,
+                         @Value("${rp.processing.log.flushParallelism}") int flushParallelism,
+                         @Value("${rp.processing.log.maxInFlightBatches}") int maxInFlightBatches,
+                         @Value("${rp.processing.log.maxBatchWeight}") long maxBatchWeight,
+                         @Value("${rp.processing.log.oversized.policy}") OversizedLogPolicy oversizedLogPolicy,
+                         @Value("${rp.processing.log.oversized.maxMessageSize}") int maxMessageSize,
+                         Optional<LogSpillStore> logSpillStore,
+                         AdaptiveBatchProperties adaptiveBatchProperties,
+                         MeterRegistry meterRegistry) {
+        this(simpleElasticSearchClient, batchSize, timeout, bufferSize, flushParallelism, maxInFlightBatches, maxBatchWeight,
+                oversizedLogPolicy, maxMessageSize, logSpillStore, adaptiveBatchProperties.isEnabled() ? new AdaptiveBatchController(batchSize,
+                        adaptiveBatchProperties.getMinBatchSize(),
+                        adaptiveBatchProperties.getMaxBatchSize(),
+                        timeout,
+                        adaptiveBatchProperties.getMinBatchTimeout(),
+                        adaptiveBatchProperties.getMaxBatchTimeout(),
+                        adaptiveBatchProperties.getTargetLatency(),
+                        adaptiveBatchProperties.getTargetPayloadSize(),
+                        adaptiveBatchProperties.getLatencyWindow()
+                ) : null,
+                meterRegistry
+        );
+    }
+
+    private LogProcessing(SimpleElasticSearchClient simpleElasticSearchClient, int batchSize, int timeout, int bufferSize,
+                          int flushParallelism, int maxInFlightBatches, long maxBatchWeight, OversizedLogPolicy oversizedLogPolicy,
+                          int maxMessageSize, Optional<LogSpillStore> logSpillStore, AdaptiveBatchController controller,
+                          MeterRegistry meterRegistry) {
+        super(batchSize, timeout, bufferSize, flushParallelism, maxInFlightBatches, controller,
+                maxBatchWeight > 0 ? BulkBodyWriter::estimateSize : null, maxBatchWeight);
         this.simpleElasticSearchClient = simpleElasticSearchClient;
+        this.logSpillStore = logSpillStore.orElse(null);
+        this.controller = controller;
+        this.oversizedLogPolicy = oversizedLogPolicy;
+        this.maxMessageSize = maxMessageSize;
+
+        Gauge.builder("logs.buffer.size", this, LogProcessing::getBufferedCount)
+                .description("Logs buffered or being saved")
+                .register(meterRegistry);
+        Gauge.builder("logs.buffer.capacity", this, LogProcessing::getCapacity).register(meterRegistry);
+        Gauge.builder("logs.batch.current", this, LogProcessing::getCurrentBatchCount)
+                .description("Logs in the batch being filled")
+                .register(meterRegistry);
+        Gauge.builder("logs.flush.inflight", this, LogProcessing::getInFlightBatches)
+                .description("Batches queued or being saved by flush lanes")
+                .register(meterRegistry);
+        for (FlushTrigger trigger : FlushTrigger.values()) {
+            flushedBatches.put(trigger, DistributionSummary.builder("logs.batch.size")
+                    .description("Logs per flushed batch")
+                    .tag(TRIGGER_TAG, trigger.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        spilledLogs = Counter.builder("logs.spilled").register(meterRegistry);
+        if (controller != null) {
+            Gauge.builder("logs.batch.limit", controller, AdaptiveBatchController::getBatchSize)
+                    .description("Size of new batches")
+                    .register(meterRegistry);
+            Gauge.builder("logs.batch.timeout", controller, AdaptiveBatchController::getTimeout)
+                    .description("Max time a batch is filled, milliseconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    @PostConstruct
+    @Override
+    public void start() {
+        super.start();
+    }
+
+    /**
+     * Adds the log, or the logs the oversized log policy replaces it with. The callback is notified once for all of them.
+     */
+    @Override
+    public void add(LogMessage logMessage, FlushCallback callback) {
+        if (maxMessageSize <= 0 || BulkBodyWriter.estimateSize(logMessage.getLogMessage()) <= maxMessageSize) {
+            super.add(logMessage, callback);
+            return;
+        }
+        List<LogMessage> logs = oversizedLogPolicy.apply(logMessage, maxMessageSize);
+        if (logs.size() == 1) {
+            super.add(logs.get(0), callback);
+            return;
+        }
+        FlushCallback partCallback = callback == null ? null : new PartsCallback(logs.size(), callback);
+        logs.forEach(part -> super.add(part, partCallback));
+    }
+
+    /**
+     * @return Amount of flushed batches by trigger
+     */
+    public Map<FlushTrigger, Long> getFlushCounts() {
+        Map<FlushTrigger, Long> flushCounts = new EnumMap<>(FlushTrigger.class);
+        flushedBatches.forEach((trigger, summary) -> flushCounts.put(trigger, summary.count()));
+        return flushCounts;
+    }
+
+    @Override
+    protected void onFlush(FlushTrigger trigger, int size) {
+        flushedBatches.get(trigger).record(size);
+    }
+
+    /**
+     * Logs are stored to the index of their launch, so partitioning by launch keeps the order within every index.
+     */
+    @Override
+    protected Object partitionKey(LogMessage logMessage) {
+        return logMessage.getLaunchId();
     }
 
     @Override
     protected void process(List<LogMessage> logMessageList) {
-        if (!CollectionUtils.isEmpty(logMessageList)) {
-            simpleElasticSearchClient.save(logMessageList);
+        if (CollectionUtils.isEmpty(logMessageList)) {
+            return;
+        }
+        long start = System.nanoTime();
+        long payloadSize = 0;
+        boolean throttled = true;
+        try {
+            BulkResult result = simpleElasticSearchClient.save(logMessageList);
+            payloadSize = result.getPayloadSize();
+            throttled = result.getThrottledItems() > 0;
+        } finally {
+            if (controller != null) {
+                long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                controller.onProcessed(logMessageList.size(), payloadSize, latency, throttled);
+            }
+        }
+    }
+
+    /**
+     * Failed logs of a bulk indexing failure are all logs which are not indexed, the rest of the batch is not spilled to
+     * avoid duplicates on replay.
+     */
+    @Override
+    protected List<LogMessage> unprocessed(List<LogMessage> logMessageList, Exception failure) {
+        return failure instanceof BulkIndexingException ? ((BulkIndexingException) failure).getFailedLogs() : logMessageList;
+    }
+
+    @Override
+    protected boolean spill(List<LogMessage> logMessageList) {
+        if (logSpillStore == null) {
+            return false;
+        }
+        try {
+            boolean spilled = logSpillStore.append(logMessageList);
+            if (spilled) {
+                spilledLogs.increment(logMessageList.size());
+            }
+            return spilled;
+        } catch (Exception e) {
+            LOGGER.error("Unable to spill {} logs", logMessageList.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Notifies the callback of a split log once all of its parts are saved, or once the first part fails.
+     */
+    private static final class PartsCallback implements FlushCallback {
+
+        private final AtomicInteger remaining;
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private final FlushCallback callback;
+
+        private PartsCallback(int parts, FlushCallback callback) {
+            this.remaining = new AtomicInteger(parts);
+            this.callback = callback;
+        }
+
+        @Override
+        public void onFlushed() {
+            if (remaining.decrementAndGet() == 0 && !failed.get()) {
+                callback.onFlushed();
+            }
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            // marked before counting the part, so the last successful part never takes it as a success
+            boolean first = failed.compareAndSet(false, true);
+            remaining.decrementAndGet();
+            if (first) {
+                callback.onFailed(e);
+            }
         }
     }
 }
@@ -0,0 +1,44 @@
+package com.epam.reportportal.log;
+
+import com.epam.reportportal.log.spill.LogSpillStore;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Live state of the log buffer, to tune batch size and timeout.
+ */
+@Component
+@Endpoint(id = "logprocessing")
+public class LogProcessingEndpoint {
+
+    private final LogProcessing logProcessing;
+    private final LogSpillStore logSpillStore;
+
+    public LogProcessingEndpoint(LogProcessing logProcessing, Optional<LogSpillStore> logSpillStore) {
+        this.logProcessing = logProcessing;
+        this.logSpillStore = logSpillStore.orElse(null);
+    }
+
+    @ReadOperation
+    public Map<String, Object> state() throws IOException {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("maxBatchSize", logProcessing.getBatchSize());
+        state.put("maxBatchTimeout", logProcessing.getTimeout());
+        state.put("maxBufferSize", logProcessing.getCapacity());
+        state.put("flushParallelism", logProcessing.getFlushParallelism());
+        state.put("buffered", logProcessing.getBufferedCount());
+        state.put("currentBatch", logProcessing.getCurrentBatchCount());
+        state.put("inFlightBatches", logProcessing.getInFlightBatches());
+        state.put("flushes", logProcessing.getFlushCounts());
+        if (logSpillStore != null) {
+            state.put("spilledSegments", logSpillStore.sealedSegments().size());
+        }
+        return state;
+    }
+}
@@ -0,0 +1,87 @@
+package com.epam.reportportal.log;
+
+import com.epam.reportportal.elastic.BulkBodyWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handling of logs with messages over the max size, measured as in a bulk request body.
+ */
+public enum OversizedLogPolicy {
+
+    /**
+     * Logs are saved as they are
+     */
+    NONE {
+        @Override
+        List<LogMessage> apply(LogMessage logMessage, int maxMessageSize) {
+            return List.of(logMessage);
+        }
+    },
+    /**
+     * The message is cut at the max size and ends with {@link #TRUNCATED}
+     */
+    TRUNCATE {
+        @Override
+        List<LogMessage> apply(LogMessage logMessage, int maxMessageSize) {
+            String message = logMessage.getLogMessage();
+            int end = prefixLength(message, 0, maxMessageSize - BulkBodyWriter.estimateSize(TRUNCATED));
+            return List.of(withMessage(logMessage, message.substring(0, end) + TRUNCATED));
+        }
+    },
+    /**
+     * The message is saved as several logs with the same attributes, every part except the last one has the max size
+     */
+    SPLIT {
+        @Override
+        List<LogMessage> apply(LogMessage logMessage, int maxMessageSize) {
+            String message = logMessage.getLogMessage();
+            List<LogMessage> parts = new ArrayList<>();
+            for (int from = 0; from < message.length(); ) {
+                int to = prefixLength(message, from, maxMessageSize);
+                parts.add(withMessage(logMessage, message.substring(from, to)));
+                from = to;
+            }
+            return parts;
+        }
+    };
+
+    static final String TRUNCATED = "... [truncated]";
+
+    /**
+     * @param logMessage     Log with the message over the max size
+     * @param maxMessageSize Max size of a message, bytes
+     * @return Logs to save instead
+     */
+    abstract List<LogMessage> apply(LogMessage logMessage, int maxMessageSize);
+
+    /**
+     * @return Index where the longest substring starting at {@code from} and not over {@code maxSize} ends,
+     * at least one character (or surrogate pair) is taken
+     */
+    private static int prefixLength(String message, int from, long maxSize) {
+        long size = 0;
+        int end = from;
+        while (end < message.length()) {
+            // a surrogate pair is never split
+            int length = Character.isHighSurrogate(message.charAt(end)) && end + 1 < message.length() ? 2 : 1;
+            size += BulkBodyWriter.estimateSize(message.charAt(end)) * length;
+            if (size > maxSize && end > from) {
+                break;
+            }
+            end += length;
+        }
+        return end;
+    }
+
+    private static LogMessage withMessage(LogMessage logMessage, String message) {
+        return new LogMessage(logMessage.getId(),
+                logMessage.getLogTime(),
+                message,
+                logMessage.getItemId(),
+                logMessage.getLaunchId(),
+                logMessage.getProjectId()
+        );
+    }
+}
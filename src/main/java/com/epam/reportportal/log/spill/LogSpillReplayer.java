@@ -0,0 +1,93 @@
+package com.epam.reportportal.log.spill;
+
+import com.epam.reportportal.elastic.BulkIndexingException;
+import com.epam.reportportal.elastic.SimpleElasticSearchClient;
+import com.epam.reportportal.log.LogMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Drains spilled logs back to Elasticsearch. The first run happens on startup, so segments left by the previous run
+ * are replayed as soon as the cluster is available.
+ */
+@Service
+@ConditionalOnProperty(prefix = "rp.processing.log.spill", name = "enabled", havingValue = "true")
+public class LogSpillReplayer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogSpillReplayer.class);
+
+    private final LogSpillStore logSpillStore;
+    private final SimpleElasticSearchClient simpleElasticSearchClient;
+    private final int replayBatchSize;
+    private final long maxSegmentAge;
+
+    /**
+     * @param maxSegmentAge Max time logs are written to the same segment before it is replayed, milliseconds
+     */
+    public LogSpillReplayer(LogSpillStore logSpillStore, SimpleElasticSearchClient simpleElasticSearchClient,
+                            @Value("${rp.processing.log.spill.replayBatchSize}") int replayBatchSize,
+                            @Value("${rp.processing.log.spill.maxSegmentAge}") long maxSegmentAge) {
+        this.logSpillStore = logSpillStore;
+        this.simpleElasticSearchClient = simpleElasticSearchClient;
+        this.replayBatchSize = replayBatchSize;
+        this.maxSegmentAge = maxSegmentAge;
+    }
+
+    @Scheduled(fixedDelayString = "${rp.processing.log.spill.replayInterval}")
+    public void replay() {
+        logSpillStore.rotate(maxSegmentAge);
+        try {
+            for (Path segment : logSpillStore.sealedSegments()) {
+                logSpillStore.replay(segment, replayBatchSize, this::save);
+                logSpillStore.delete(segment);
+                LOGGER.info("Spilled logs of {} are replayed", segment.getFileName());
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Unable to replay spilled logs, replay is postponed: {}", e.getMessage());
+        }
+    }
+
+    private void save(List<LogMessage> logs) {
+        try {
+            simpleElasticSearchClient.save(logs);
+        } catch (BulkIndexingException e) {
+            // logs are spilled once they are rejected permanently, so they are dropped if the replay is rejected as well
+            Set<LogMessage> permanentlyRejected = Collections.newSetFromMap(new IdentityHashMap<>());
+            permanentlyRejected.addAll(e.getPermanentlyRejectedLogs());
+            List<LogMessage> failed = e.getFailedLogs().stream()
+                    .filter(log -> !permanentlyRejected.contains(log))
+                    .collect(Collectors.toList());
+            if (!permanentlyRejected.isEmpty()) {
+                LOGGER.error("{} spilled logs were rejected permanently again and are dropped", permanentlyRejected.size());
+            }
+            if (failed.size() == logs.size()) {
+                // nothing is indexed, the replay is postponed from this chunk
+                throw e;
+            }
+            if (failed.isEmpty()) {
+                return;
+            }
+            // the rest of the chunk is indexed, so only logs which are not indexed are kept for the next replay
+            try {
+                if (!logSpillStore.append(failed)) {
+                    throw e;
+                }
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+        }
+    }
+}
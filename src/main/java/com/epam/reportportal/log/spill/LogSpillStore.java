@@ -0,0 +1,368 @@
+package com.epam.reportportal.log.spill;
+
+import com.epam.reportportal.log.LogMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of messages which couldn't be saved to Elasticsearch, split into memory-mapped segment files.
+ * <p>
+ * Record format: payload length (int), CRC32 of the payload (int), payload. A zero length marks the end of a segment.
+ * Segments left from the previous run are replayed as they are, new records always go to a new segment. A corrupted record
+ * is skipped up to the next record with a valid header and checksum.
+ * <p>
+ * Concurrent appends share a single {@code force()} of the segment. The replay position of a segment is stored next to
+ * it, so a replay after a restart continues from it.
+ */
+@Component
+@ConditionalOnProperty(prefix = "rp.processing.log.spill", name = "enabled", havingValue = "true")
+public class LogSpillStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogSpillStore.class);
+
+    private static final String SEGMENT_PREFIX = "spill-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String POSITION_SUFFIX = ".position";
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    // presence flags, 4 ids, epoch seconds, nanos and message length
+    private static final int FIXED_PAYLOAD_SIZE = 1 + 5 * Long.BYTES + 2 * Integer.BYTES;
+
+    private static final int ID = 1;
+    private static final int LOG_TIME = 1 << 1;
+    private static final int MESSAGE = 1 << 2;
+    private static final int ITEM_ID = 1 << 3;
+    private static final int LAUNCH_ID = 1 << 4;
+    private static final int PROJECT_ID = 1 << 5;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Object forceLock = new Object();
+
+    private long nextSequence;
+    private Path activeSegment;
+    private MappedByteBuffer activeBuffer;
+    private long activeSince;
+    // amount of appends, and amount of appends which are forced to the disk
+    private long appended;
+    private long forced;
+
+    public LogSpillStore(@Value("${rp.processing.log.spill.directory}") String directory,
+                         @Value("${rp.processing.log.spill.segmentSize}") int segmentSize,
+                         @Value("${rp.processing.log.spill.maxSegments}") int maxSegments) throws IOException {
+        this.directory = Files.createDirectories(Paths.get(directory));
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.nextSequence = sealedSegments().stream().mapToLong(LogSpillStore::sequence).max().orElse(0L) + 1;
+    }
+
+    /**
+     * Appends logs to the active segment, all or none of them. Logs of a single call are always written to the same
+     * segment, a new segment is started when the active one has no room for all of them.
+     *
+     * @param logs Logs to store
+     * @return {@code true} if logs are stored, {@code false} if the store is full and none of the logs are stored
+     */
+    public boolean append(List<LogMessage> logs) throws IOException {
+        long sequence;
+        synchronized (this) {
+            if (!write(logs)) {
+                return false;
+            }
+            sequence = ++appended;
+        }
+        force(sequence);
+        return true;
+    }
+
+    private boolean write(List<LogMessage> logs) throws IOException {
+        List<byte[]> messages = new ArrayList<>(logs.size());
+        long totalSize = Integer.BYTES;
+        for (LogMessage log : logs) {
+            byte[] message = log.getLogMessage() == null ? new byte[0] : log.getLogMessage().getBytes(StandardCharsets.UTF_8);
+            messages.add(message);
+            totalSize += HEADER_SIZE + FIXED_PAYLOAD_SIZE + message.length;
+        }
+        if (totalSize > Integer.MAX_VALUE) {
+            LOGGER.error("{} logs of {} bytes don't fit into a spill segment", logs.size(), totalSize);
+            return false;
+        }
+        // keeps room for the end marker
+        if (activeBuffer == null || activeBuffer.remaining() < totalSize) {
+            if (!startSegment((int) totalSize)) {
+                return false;
+            }
+        }
+        int start = activeBuffer.position();
+        try {
+            for (int i = 0; i < logs.size(); i++) {
+                writeRecord(activeBuffer, logs.get(i), messages.get(i));
+            }
+        } catch (RuntimeException e) {
+            // records written so far are erased, so that neither the end marker nor a resync finds them
+            for (int position = start; position < activeBuffer.position(); position++) {
+                activeBuffer.put(position, (byte) 0);
+            }
+            activeBuffer.position(start);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Forces the active segment, unless an append after the given one has already been forced. Appends to segments
+     * rotated since then are forced by the rotation.
+     */
+    private void force(long sequence) {
+        synchronized (forceLock) {
+            if (forced >= sequence) {
+                return;
+            }
+            MappedByteBuffer buffer;
+            long upTo;
+            synchronized (this) {
+                buffer = activeBuffer;
+                upTo = appended;
+            }
+            if (buffer != null) {
+                buffer.force();
+            }
+            forced = upTo;
+        }
+    }
+
+    /**
+     * Seals the active segment, if it has been written for the given time. Segments are rotated by size on append.
+     *
+     * @param maxAge Max time since the first record of the active segment, milliseconds
+     */
+    public synchronized void rotate(long maxAge) {
+        if (activeBuffer != null && activeBuffer.position() > 0 && System.currentTimeMillis() - activeSince >= maxAge) {
+            rotate();
+        }
+    }
+
+    /**
+     * Seals the active segment, so it can be replayed.
+     */
+    public synchronized void rotate() {
+        if (activeBuffer != null && activeBuffer.position() > 0) {
+            activeBuffer.force();
+            activeBuffer = null;
+            activeSegment = null;
+        }
+    }
+
+    /**
+     * @return Segments which are not written anymore, in the order of writing
+     */
+    public synchronized List<Path> sealedSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(LogSpillStore::isSegment)
+                    .filter(segment -> !segment.equals(activeSegment))
+                    .sorted(Comparator.comparingLong(LogSpillStore::sequence))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Passes logs of the segment to the consumer in chunks. If the consumer fails, the next replay of the segment
+     * starts from the failed chunk.
+     *
+     * @param segment   Sealed segment
+     * @param chunkSize Max amount of logs passed to the consumer at once
+     * @param consumer  Consumer of logs
+     */
+    public void replay(Path segment, int chunkSize, Consumer<List<LogMessage>> consumer) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.position(readPosition(segment));
+        List<LogMessage> chunk = new ArrayList<>(chunkSize);
+        while (true) {
+            LogMessage log = readRecord(segment, buffer);
+            if (log != null) {
+                chunk.add(log);
+            }
+            if (!chunk.isEmpty() && (log == null || chunk.size() == chunkSize)) {
+                consumer.accept(chunk);
+                writePosition(segment, buffer.position());
+                chunk = new ArrayList<>(chunkSize);
+            }
+            if (log == null) {
+                return;
+            }
+        }
+    }
+
+    public void delete(Path segment) throws IOException {
+        Files.deleteIfExists(segment);
+        Files.deleteIfExists(positionFile(segment));
+    }
+
+    private static int readPosition(Path segment) throws IOException {
+        Path file = positionFile(segment);
+        return Files.exists(file) ? Integer.parseInt(Files.readString(file).trim()) : 0;
+    }
+
+    private static void writePosition(Path segment, int position) throws IOException {
+        Path file = positionFile(segment);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, String.valueOf(position));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path positionFile(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + POSITION_SUFFIX);
+    }
+
+    private boolean startSegment(int minSize) throws IOException {
+        rotate();
+        if (sealedSegments().size() >= maxSegments) {
+            LOGGER.error("Spill directory {} is full, {} segments are waiting for replay", directory, maxSegments);
+            return false;
+        }
+        Path segment = directory.resolve(SEGMENT_PREFIX + nextSequence++ + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(segment,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        )) {
+            activeBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minSize));
+        }
+        activeSegment = segment;
+        activeSince = System.currentTimeMillis();
+        return true;
+    }
+
+    private static void writeRecord(ByteBuffer buffer, LogMessage log, byte[] message) {
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        int flags = (log.getId() != null ? ID : 0) | (log.getLogTime() != null ? LOG_TIME : 0) | (log.getLogMessage() != null ?
+                MESSAGE :
+                0) | (log.getItemId() != null ? ITEM_ID : 0) | (log.getLaunchId() != null ? LAUNCH_ID : 0) | (log.getProjectId() != null ?
+                PROJECT_ID :
+                0);
+        buffer.put((byte) flags);
+        buffer.putLong(valueOf(log.getId()));
+        buffer.putLong(log.getLogTime() != null ? log.getLogTime().toEpochSecond(ZoneOffset.UTC) : 0L);
+        buffer.putInt(log.getLogTime() != null ? log.getLogTime().getNano() : 0);
+        buffer.putLong(valueOf(log.getItemId()));
+        buffer.putLong(valueOf(log.getLaunchId()));
+        buffer.putLong(valueOf(log.getProjectId()));
+        buffer.putInt(message.length);
+        buffer.put(message);
+        int end = buffer.position();
+
+        int length = end - start - HEADER_SIZE;
+        buffer.putInt(start, length);
+        buffer.putInt(start + Integer.BYTES, checksum(buffer, start + HEADER_SIZE, length));
+    }
+
+    /**
+     * @return Next log of the segment, or {@code null} if the end of the segment is reached
+     */
+    private static LogMessage readRecord(Path segment, ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(buffer.position()) == 0) {
+            return null;
+        }
+        int start = buffer.position();
+        if (!isRecord(buffer, start)) {
+            int next = nextRecord(buffer, start + 1);
+            LOGGER.error("Corrupted record at {} in spill segment {}, {} bytes are skipped",
+                    start,
+                    segment,
+                    (next < 0 ? buffer.limit() : next) - start
+            );
+            if (next < 0) {
+                buffer.position(buffer.limit());
+                return null;
+            }
+            start = next;
+        }
+        buffer.position(start + HEADER_SIZE);
+        int flags = buffer.get();
+        long id = buffer.getLong();
+        long epochSecond = buffer.getLong();
+        int nano = buffer.getInt();
+        long itemId = buffer.getLong();
+        long launchId = buffer.getLong();
+        long projectId = buffer.getLong();
+        byte[] message = new byte[buffer.getInt()];
+        buffer.get(message);
+        return new LogMessage((flags & ID) != 0 ? id : null,
+                (flags & LOG_TIME) != 0 ? LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC) : null,
+                (flags & MESSAGE) != 0 ? new String(message, StandardCharsets.UTF_8) : null,
+                (flags & ITEM_ID) != 0 ? itemId : null,
+                (flags & LAUNCH_ID) != 0 ? launchId : null,
+                (flags & PROJECT_ID) != 0 ? projectId : null
+        );
+    }
+
+    private static boolean isRecord(ByteBuffer buffer, int start) {
+        if (buffer.limit() - start < HEADER_SIZE) {
+            return false;
+        }
+        int length = buffer.getInt(start);
+        return length >= FIXED_PAYLOAD_SIZE && length <= buffer.limit() - start - HEADER_SIZE
+                && checksum(buffer, start + HEADER_SIZE, length) == buffer.getInt(start + Integer.BYTES);
+    }
+
+    /**
+     * @return Position of the next record with a valid header and checksum, or -1 if there is none
+     */
+    private static int nextRecord(ByteBuffer buffer, int from) {
+        for (int position = from; position <= buffer.limit() - HEADER_SIZE; position++) {
+            if (isRecord(buffer, position)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(offset + length).position(offset);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static long valueOf(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long sequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
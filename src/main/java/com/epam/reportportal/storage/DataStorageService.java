@@ -16,9 +16,32 @@
 
 package com.epam.reportportal.storage;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Storage service interface
  */
 public interface DataStorageService {
     void delete(String filePath) throws Exception;
+
+    /**
+     * Deletes several files, a failed deletion doesn't stop deletion of the rest.
+     *
+     * @param filePaths Paths of files to delete
+     * @return Result by file path, {@code true} if the file is deleted or doesn't exist
+     */
+    default Map<String, Boolean> delete(Collection<String> filePaths) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        for (String filePath : filePaths) {
+            try {
+                delete(filePath);
+                result.put(filePath, true);
+            } catch (Exception e) {
+                result.put(filePath, false);
+            }
+        }
+        return result;
+    }
 }
\ No newline at end of file
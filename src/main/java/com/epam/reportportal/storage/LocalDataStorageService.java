@@ -22,6 +22,9 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Local storage service
@@ -45,4 +48,22 @@ public class LocalDataStorageService implements DataStorageService {
             throw e;
         }
     }
+
+    /**
+     * Files are deleted one by one on the calling thread, which is the storage cleanup executor of the cleanup job,
+     * rather than on the common pool shared with the rest of the application.
+     */
+    @Override
+    public Map<String, Boolean> delete(Collection<String> filePaths) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        filePaths.stream().distinct().forEach(filePath -> {
+            try {
+                delete(filePath);
+                result.put(filePath, true);
+            } catch (IOException e) {
+                result.put(filePath, false);
+            }
+        });
+        return result;
+    }
 }
@@ -17,11 +17,19 @@
 package com.epam.reportportal.storage;
 
 import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Minio storage service
@@ -29,6 +37,8 @@ import java.nio.file.Paths;
 public class MinioDataStorageService implements DataStorageService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MinioDataStorageService.class);
+    // limit of the multi-object delete request
+    private static final int MAX_KEYS_PER_REQUEST = 1000;
 
     private final MinioClient minioClient;
     private final String bucketPrefix;
@@ -42,29 +52,70 @@ public class MinioDataStorageService implements DataStorageService {
 
     @Override
     public void delete(String filePath) throws Exception {
-        Path targetPath = Paths.get(filePath);
-        int nameCount = targetPath.getNameCount();
-
-        String bucket;
-        String objectName;
-
-        if (nameCount > 1) {
-            bucket = bucketPrefix + retrievePath(targetPath, 0, 1);
-            objectName = retrievePath(targetPath, 1, nameCount);
-        } else {
-            bucket = defaultBucketName;
-            objectName = retrievePath(targetPath, 0, 1);
-        }
-
+        ObjectLocation location = resolve(filePath);
         try {
-            minioClient.removeObject(bucket, objectName);
+            minioClient.removeObject(location.bucket, location.objectName);
         } catch (Exception e) {
             LOGGER.error("Unable to delete file '{}'", filePath, e);
             throw e;
         }
     }
 
+    /**
+     * Deletes files with multi-object delete requests, a request per bucket and {@value MAX_KEYS_PER_REQUEST} files.
+     */
+    @Override
+    public Map<String, Boolean> delete(Collection<String> filePaths) {
+        Map<String, Map<String, String>> pathsByBucket = new HashMap<>();
+        for (String filePath : filePaths) {
+            ObjectLocation location = resolve(filePath);
+            pathsByBucket.computeIfAbsent(location.bucket, bucket -> new LinkedHashMap<>()).put(location.objectName, filePath);
+        }
+
+        Map<String, Boolean> result = new HashMap<>();
+        pathsByBucket.forEach((bucket, pathsByObject) -> {
+            List<String> objectNames = new ArrayList<>(pathsByObject.keySet());
+            for (int from = 0; from < objectNames.size(); from += MAX_KEYS_PER_REQUEST) {
+                List<String> request = objectNames.subList(from, Math.min(from + MAX_KEYS_PER_REQUEST, objectNames.size()));
+                request.forEach(objectName -> result.put(pathsByObject.get(objectName), true));
+                try {
+                    // results are lazy, the request is sent on iteration and only failed objects are returned
+                    for (Result<DeleteError> error : minioClient.removeObjects(bucket, request)) {
+                        DeleteError deleteError = error.get();
+                        LOGGER.error("Unable to delete file '{}': {}", pathsByObject.get(deleteError.objectName()), deleteError.message());
+                        result.put(pathsByObject.get(deleteError.objectName()), false);
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("Unable to delete {} files from bucket '{}'", request.size(), bucket, e);
+                    request.forEach(objectName -> result.put(pathsByObject.get(objectName), false));
+                }
+            }
+        });
+        return result;
+    }
+
+    private ObjectLocation resolve(String filePath) {
+        Path targetPath = Paths.get(filePath);
+        int nameCount = targetPath.getNameCount();
+        if (nameCount > 1) {
+            return new ObjectLocation(bucketPrefix + retrievePath(targetPath, 0, 1), retrievePath(targetPath, 1, nameCount));
+        } else {
+            return new ObjectLocation(defaultBucketName, retrievePath(targetPath, 0, 1));
+        }
+    }
+
     private String retrievePath(Path path, int beginIndex, int endIndex) {
         return String.valueOf(path.subpath(beginIndex, endIndex));
     }
+
+    private static class ObjectLocation {
+
+        private final String bucket;
+        private final String objectName;
+
+        private ObjectLocation(String bucket, String objectName) {
+            this.bucket = bucket;
+            this.objectName = objectName;
+        }
+    }
 }
@@ -0,0 +1,89 @@
+package com.epam.reportportal.analyzer.index;
+
+import com.epam.reportportal.model.index.CleanIndexByDateRangeRq;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IndexRemovalOutboxTest {
+
+	private static final String ROUTE = "remove_by_log_time";
+	private static final LocalDateTime DATE = LocalDateTime.of(2021, 3, 1, 12, 0);
+
+	private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+	private final RabbitOperations operations = mock(RabbitOperations.class);
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void shouldPublishOnlyLatestRemovalOfProject() {
+		final IndexRemovalOutbox outbox = new IndexRemovalOutbox(rabbitTemplate, objectMapper, "", 1000);
+		mockInvoke();
+
+		outbox.add(1L, ROUTE, DATE);
+		outbox.add(1L, ROUTE, DATE.plusMinutes(5));
+		outbox.add(1L, ROUTE, DATE.plusMinutes(2));
+		outbox.add(2L, ROUTE, DATE);
+		outbox.flush();
+
+		final ArgumentCaptor<CleanIndexByDateRangeRq> messages = ArgumentCaptor.forClass(CleanIndexByDateRangeRq.class);
+		verify(operations, times(2)).convertAndSend(eq("analyzer-default"), eq(ROUTE), messages.capture());
+		Assertions.assertEquals(1L, messages.getAllValues().get(0).getProjectId());
+		Assertions.assertEquals(DATE.plusMinutes(5), messages.getAllValues().get(0).getIntervalEndDate());
+		verify(operations).waitForConfirmsOrDie(1000);
+		Assertions.assertEquals(0, outbox.size());
+	}
+
+	@Test
+	void shouldKeepRemovalsUntilConfirmed() {
+		final IndexRemovalOutbox outbox = new IndexRemovalOutbox(rabbitTemplate, objectMapper, "", 1000);
+		mockInvoke();
+		doThrow(new AmqpIOException(new IOException("Not confirmed"))).doNothing().when(operations).waitForConfirmsOrDie(anyLong());
+
+		outbox.add(1L, ROUTE, DATE);
+		outbox.flush();
+		Assertions.assertEquals(1, outbox.size());
+
+		outbox.flush();
+		Assertions.assertEquals(0, outbox.size());
+		verify(operations, times(2)).convertAndSend(anyString(), anyString(), any(Object.class));
+	}
+
+	@Test
+	void shouldRestorePendingRemovals() {
+		final String file = directory.resolve("outbox").resolve("index-removal.json").toString();
+		new IndexRemovalOutbox(rabbitTemplate, objectMapper, file, 1000).add(1L, ROUTE, DATE);
+
+		final IndexRemovalOutbox restored = new IndexRemovalOutbox(rabbitTemplate, objectMapper, file, 1000);
+		mockInvoke();
+		restored.flush();
+
+		verify(operations).convertAndSend(eq("analyzer-default"), eq(ROUTE), any(CleanIndexByDateRangeRq.class));
+		Assertions.assertEquals(0, new IndexRemovalOutbox(rabbitTemplate, objectMapper, file, 1000).size());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void mockInvoke() {
+		when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+			final RabbitOperations.OperationsCallback<Object> callback = invocation.getArgument(0);
+			return callback.doInRabbit(operations);
+		});
+	}
+}
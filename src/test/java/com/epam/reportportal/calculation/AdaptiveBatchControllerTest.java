@@ -0,0 +1,78 @@
+package com.epam.reportportal.calculation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveBatchControllerTest {
+
+	@Test
+	void shouldGrowWhileHealthyAndHalveOnOverload() {
+		final AdaptiveBatchController controller = new AdaptiveBatchController(300, 100, 2100, 1000, 50, 1000, 500, 1_000_000);
+
+		controller.onSealed(FlushTrigger.SIZE, 300);
+		controller.onProcessed(300, 30_000, 100, false);
+		controller.onSealed(FlushTrigger.SIZE, 400);
+		Assertions.assertEquals(500, controller.getBatchSize());
+
+		controller.onProcessed(500, 50_000, 100, true);
+		Assertions.assertEquals(250, controller.getBatchSize());
+		// no growth until a flush is under the targets again
+		controller.onSealed(FlushTrigger.SIZE, 250);
+		Assertions.assertEquals(250, controller.getBatchSize());
+
+		controller.onProcessed(250, 25_000, 600, false);
+		controller.onProcessed(125, 12_500, 600, false);
+		controller.onProcessed(100, 10_000, 600, false);
+		Assertions.assertEquals(100, controller.getBatchSize());
+	}
+
+	@Test
+	void shouldShrinkByLatencyPercentileOfWindow() {
+		final AdaptiveBatchController controller = new AdaptiveBatchController(300, 100, 2100, 1000, 50, 1000, 500, 1_000_000, 200);
+		for (int i = 0; i < 199; i++) {
+			controller.onProcessed(300, 30_000, 100, false);
+		}
+
+		// a single slow flush is under the 99th percentile of a full window
+		controller.onProcessed(300, 30_000, 600, false);
+		Assertions.assertEquals(300, controller.getBatchSize());
+
+		controller.onProcessed(300, 30_000, 600, false);
+		controller.onProcessed(300, 30_000, 600, false);
+		Assertions.assertEquals(150, controller.getBatchSize());
+		// latencies of bigger batches are discarded
+		controller.onProcessed(150, 15_000, 100, false);
+		Assertions.assertEquals(150, controller.getBatchSize());
+	}
+
+	@Test
+	void shouldStopGrowingAtTargetPayload() {
+		final AdaptiveBatchController controller = new AdaptiveBatchController(1000, 100, 2100, 1000, 50, 1000, 500, 1_000_000);
+		controller.onProcessed(1000, 800_000, 100, false);
+
+		for (int i = 0; i < 10; i++) {
+			controller.onSealed(FlushTrigger.SIZE, controller.getBatchSize());
+		}
+
+		Assertions.assertEquals(1250, controller.getBatchSize());
+	}
+
+	@Test
+	void shouldShortenTimeoutWhenBatchesDoNotFillUp() {
+		final AdaptiveBatchController controller = new AdaptiveBatchController(300, 100, 2100, 1000, 50, 1000, 500, 1_000_000);
+
+		controller.onSealed(FlushTrigger.TIMEOUT, 200);
+		Assertions.assertEquals(1000, controller.getTimeout());
+		controller.onSealed(FlushTrigger.TIMEOUT, 10);
+		controller.onSealed(FlushTrigger.TIMEOUT, 10);
+		Assertions.assertEquals(250, controller.getTimeout());
+		for (int i = 0; i < 10; i++) {
+			controller.onSealed(FlushTrigger.TIMEOUT, 10);
+		}
+		Assertions.assertEquals(50, controller.getTimeout());
+
+		controller.onSealed(FlushTrigger.SHUTDOWN, 10);
+		controller.onSealed(FlushTrigger.SIZE, 300);
+		Assertions.assertEquals(97, controller.getTimeout());
+	}
+}
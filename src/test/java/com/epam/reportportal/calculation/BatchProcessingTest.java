@@ -0,0 +1,407 @@
+package com.epam.reportportal.calculation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+class BatchProcessingTest {
+
+	@Test
+	void shouldProcessFullBatchesBySize() throws InterruptedException {
+		final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+		final CountDownLatch processed = new CountDownLatch(2);
+		final TestProcessing processing = new TestProcessing(3, 60_000, 10, batch -> {
+			batches.add(new ArrayList<>(batch));
+			processed.countDown();
+		});
+		processing.start();
+
+		for (int i = 0; i < 6; i++) {
+			processing.add(i);
+		}
+
+		Assertions.assertTrue(processed.await(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of(List.of(0, 1, 2), List.of(3, 4, 5)), batches);
+		processing.close();
+	}
+
+	@Test
+	void shouldProcessIncompleteBatchByTimeout() throws InterruptedException {
+		final List<Integer> items = new CopyOnWriteArrayList<>();
+		final CountDownLatch processed = new CountDownLatch(1);
+		final TestProcessing processing = new TestProcessing(100, 50, 100, batch -> {
+			items.addAll(batch);
+			processed.countDown();
+		});
+		processing.start();
+
+		processing.add(1);
+		processing.add(2);
+
+		Assertions.assertTrue(processed.await(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of(1, 2), items);
+		processing.close();
+	}
+
+	@Test
+	void shouldProcessEveryObjectOnceWithConcurrentProducers() throws InterruptedException {
+		final int producers = 16;
+		final int perProducer = 5_000;
+		final Set<Integer> items = ConcurrentHashMap.newKeySet();
+		final AtomicInteger processedCount = new AtomicInteger();
+		final TestProcessing processing = new TestProcessing(37, 10, 200, batch -> {
+			items.addAll(batch);
+			processedCount.addAndGet(batch.size());
+		});
+		processing.start();
+
+		final ExecutorService executor = Executors.newFixedThreadPool(producers);
+		for (int p = 0; p < producers; p++) {
+			final int offset = p * perProducer;
+			executor.execute(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					processing.add(offset + i);
+				}
+			});
+		}
+		executor.shutdown();
+		Assertions.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		processing.close();
+
+		Assertions.assertEquals(producers * perProducer, processedCount.get());
+		Assertions.assertEquals(producers * perProducer, items.size());
+	}
+
+	@Test
+	void shouldBlockProducerWhenCapacityIsExhausted() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final TestProcessing processing = new TestProcessing(2, 60_000, 2, batch -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		processing.start();
+		processing.add(1);
+		processing.add(2);
+
+		final CountDownLatch added = new CountDownLatch(1);
+		final Thread producer = new Thread(() -> {
+			processing.add(3);
+			added.countDown();
+		});
+		producer.start();
+
+		Assertions.assertFalse(added.await(200, TimeUnit.MILLISECONDS));
+		release.countDown();
+		Assertions.assertTrue(added.await(5, TimeUnit.SECONDS));
+		processing.close();
+	}
+
+	@Test
+	void shouldKeepOrderWithinPartitionWhenFlushingInParallel() throws InterruptedException {
+		final int keys = 5;
+		final Map<Integer, List<Integer>> itemsByKey = new ConcurrentHashMap<>();
+		final TestProcessing processing = new TestProcessing(10, 10, 100, 3, 2, batch -> batch.forEach(item -> itemsByKey.computeIfAbsent(
+				item % keys,
+				key -> new CopyOnWriteArrayList<>()
+		).add(item)));
+		processing.start();
+
+		for (int i = 0; i < 1_000; i++) {
+			processing.add(i);
+		}
+		processing.close();
+
+		Assertions.assertEquals(keys, itemsByKey.size());
+		itemsByKey.values().forEach(items -> {
+			Assertions.assertEquals(1_000 / keys, items.size());
+			for (int i = 1; i < items.size(); i++) {
+				Assertions.assertTrue(items.get(i - 1) < items.get(i));
+			}
+		});
+	}
+
+	@Test
+	void shouldNotifyCallbacksAfterProcessing() throws InterruptedException {
+		final List<Integer> flushed = new CopyOnWriteArrayList<>();
+		final List<Integer> failed = new CopyOnWriteArrayList<>();
+		final TestProcessing processing = new TestProcessing(2, 10, 10, batch -> {
+			if (batch.contains(3)) {
+				throw new IllegalStateException("Unable to process");
+			}
+		});
+		processing.start();
+
+		for (int i = 1; i <= 4; i++) {
+			final int item = i;
+			processing.add(item, new FlushCallback() {
+				@Override
+				public void onFlushed() {
+					flushed.add(item);
+				}
+
+				@Override
+				public void onFailed(Exception e) {
+					failed.add(item);
+				}
+			});
+		}
+		processing.close();
+
+		Assertions.assertEquals(List.of(1, 2), flushed);
+		Assertions.assertEquals(List.of(3, 4), failed);
+	}
+
+	@Test
+	void shouldLetProcessModifyBatch() throws InterruptedException {
+		final List<Integer> flushed = new CopyOnWriteArrayList<>();
+		final TestProcessing processing = new TestProcessing(2, 10, 10, batch -> {
+			batch.add(0);
+			batch.clear();
+		});
+		processing.start();
+
+		for (int i = 1; i <= 2; i++) {
+			final int item = i;
+			processing.add(item, new FlushCallback() {
+				@Override
+				public void onFlushed() {
+					flushed.add(item);
+				}
+
+				@Override
+				public void onFailed(Exception e) {
+				}
+			});
+		}
+		processing.close();
+
+		Assertions.assertEquals(List.of(1, 2), flushed);
+	}
+
+	@Test
+	void shouldStartOnFirstObjectWithScheduler() throws InterruptedException {
+		final List<Integer> items = new CopyOnWriteArrayList<>();
+		final CountDownLatch processed = new CountDownLatch(1);
+		final BatchProcessing<Integer> processing = new BatchProcessing<>(2, 60_000, (TaskScheduler) null) {
+			@Override
+			protected void process(List<Integer> objectList) {
+				items.addAll(objectList);
+				processed.countDown();
+			}
+		};
+
+		processing.add(1);
+		processing.add(2);
+
+		Assertions.assertTrue(processed.await(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of(1, 2), items);
+		processing.close();
+	}
+
+	@Test
+	void shouldSpillInsteadOfBlockingAndFailing() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Integer> spilled = new CopyOnWriteArrayList<>();
+		final TestProcessing processing = new TestProcessing(2, 60_000, 2, batch -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			throw new IllegalStateException("Unable to process");
+		}) {
+			@Override
+			protected boolean spill(List<Integer> objects) {
+				return spilled.addAll(objects);
+			}
+		};
+		processing.start();
+		processing.add(1);
+		processing.add(2);
+
+		processing.add(3);
+		Assertions.assertEquals(List.of(3), spilled);
+		release.countDown();
+		processing.close();
+
+		Assertions.assertEquals(List.of(3, 1, 2), spilled);
+	}
+
+	@Test
+	void shouldSpillOnlyUnprocessedObjectsOfFailedBatch() {
+		final List<Integer> spilled = new CopyOnWriteArrayList<>();
+		final List<Integer> flushed = new CopyOnWriteArrayList<>();
+		final TestProcessing processing = new TestProcessing(3, 60_000, 3, batch -> {
+			throw new IllegalStateException("Unable to process the last object");
+		}) {
+			@Override
+			protected List<Integer> unprocessed(List<Integer> objects, Exception failure) {
+				return objects.subList(objects.size() - 1, objects.size());
+			}
+
+			@Override
+			protected boolean spill(List<Integer> objects) {
+				return spilled.addAll(objects);
+			}
+		};
+		processing.start();
+
+		for (int i = 1; i <= 3; i++) {
+			final int item = i;
+			processing.add(item, new FlushCallback() {
+				@Override
+				public void onFlushed() {
+					flushed.add(item);
+				}
+
+				@Override
+				public void onFailed(Exception e) {
+				}
+			});
+		}
+		processing.close();
+
+		Assertions.assertEquals(List.of(3), spilled);
+		Assertions.assertEquals(List.of(1, 2, 3), flushed);
+	}
+
+	@Test
+	void shouldReportFlushTriggerAndBufferState() throws InterruptedException {
+		final Map<FlushTrigger, List<Integer>> flushes = new ConcurrentHashMap<>();
+		final CountDownLatch timedOut = new CountDownLatch(1);
+		final TestProcessing processing = new TestProcessing(2, 100, 10, batch -> {
+		}) {
+			@Override
+			protected void onFlush(FlushTrigger trigger, int size) {
+				flushes.computeIfAbsent(trigger, key -> new CopyOnWriteArrayList<>()).add(size);
+				if (trigger == FlushTrigger.TIMEOUT) {
+					timedOut.countDown();
+				}
+			}
+		};
+		processing.start();
+
+		processing.add(1);
+		processing.add(2);
+		processing.add(3);
+		Assertions.assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+		processing.add(4);
+		Assertions.assertEquals(1, processing.getCurrentBatchCount());
+		processing.close();
+
+		Assertions.assertEquals(List.of(2), flushes.get(FlushTrigger.SIZE));
+		Assertions.assertEquals(List.of(1), flushes.get(FlushTrigger.TIMEOUT));
+		Assertions.assertEquals(List.of(1), flushes.get(FlushTrigger.SHUTDOWN));
+		Assertions.assertEquals(0, processing.getBufferedCount());
+	}
+
+	@Test
+	void shouldTakeBatchSizeFromController() throws InterruptedException {
+		final List<Integer> sizes = new CopyOnWriteArrayList<>();
+		final AdaptiveBatchController controller = new AdaptiveBatchController(2, 2, 10, 60_000, 10, 60_000, 1000, 1000);
+		final TestProcessing processing = new TestProcessing(2, 60_000, 100, 1, 1, controller, batch -> sizes.add(batch.size()));
+		processing.start();
+
+		// the batch replacing a sealed one is created before the controller is notified, so growth is seen one batch later
+		for (int i = 0; i < 2 + 2 + 3 + 4; i++) {
+			processing.add(i);
+		}
+		processing.close();
+
+		Assertions.assertEquals(List.of(2, 2, 3, 4), sizes);
+		Assertions.assertEquals(6, processing.getBatchSize());
+	}
+
+	@Test
+	void shouldFlushBatchByWeight() throws InterruptedException {
+		final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+		final List<FlushTrigger> triggers = new CopyOnWriteArrayList<>();
+		final TestProcessing processing = new TestProcessing(100, 60_000, 100, 1, 1, null, Integer::longValue, 10, batches::add) {
+			@Override
+			protected void onFlush(FlushTrigger trigger, int size) {
+				triggers.add(trigger);
+			}
+		};
+		processing.start();
+
+		// 4 + 6 reaches the limit, 3 + 8 would go over it, 20 is over the limit alone
+		for (int item : new int[] { 4, 6, 3, 8, 20, 1 }) {
+			processing.add(item);
+		}
+		processing.close();
+
+		Assertions.assertEquals(List.of(List.of(4, 6), List.of(3), List.of(8), List.of(20), List.of(1)), batches);
+		Assertions.assertEquals(List.of(FlushTrigger.WEIGHT, FlushTrigger.WEIGHT, FlushTrigger.WEIGHT, FlushTrigger.WEIGHT,
+				FlushTrigger.SHUTDOWN), triggers);
+	}
+
+	@Test
+	void shouldKeepFlushingAfterFlushListenerFailure() throws InterruptedException {
+		final List<Integer> items = new CopyOnWriteArrayList<>();
+		final TestProcessing processing = new TestProcessing(1, 60_000, 10, items::addAll) {
+			@Override
+			protected void onFlush(FlushTrigger trigger, int size) {
+				throw new IllegalStateException("Listener has failed");
+			}
+		};
+		processing.start();
+
+		processing.add(1);
+		processing.add(2);
+		processing.close();
+
+		Assertions.assertEquals(List.of(1, 2), items);
+		Assertions.assertEquals(0, processing.getBufferedCount());
+	}
+
+	private static class TestProcessing extends BatchProcessing<Integer> {
+
+		private final Consumer<List<Integer>> consumer;
+
+		TestProcessing(int batchSize, long timeout, int capacity, Consumer<List<Integer>> consumer) {
+			this(batchSize, timeout, capacity, 1, 1, consumer);
+		}
+
+		TestProcessing(int batchSize, long timeout, int capacity, int flushParallelism, int maxInFlightBatches,
+				Consumer<List<Integer>> consumer) {
+			this(batchSize, timeout, capacity, flushParallelism, maxInFlightBatches, null, consumer);
+		}
+
+		TestProcessing(int batchSize, long timeout, int capacity, int flushParallelism, int maxInFlightBatches,
+				AdaptiveBatchController controller, Consumer<List<Integer>> consumer) {
+			this(batchSize, timeout, capacity, flushParallelism, maxInFlightBatches, controller, null, 0, consumer);
+		}
+
+		TestProcessing(int batchSize, long timeout, int capacity, int flushParallelism, int maxInFlightBatches,
+				AdaptiveBatchController controller, Weigher<Integer> weigher, long maxBatchWeight, Consumer<List<Integer>> consumer) {
+			super(batchSize, timeout, capacity, flushParallelism, maxInFlightBatches, controller, weigher, maxBatchWeight);
+			this.consumer = consumer;
+		}
+
+		@Override
+		protected Object partitionKey(Integer object) {
+			return object % 5;
+		}
+
+		@Override
+		protected void process(List<Integer> objectList) {
+			consumer.accept(objectList);
+		}
+	}
+}
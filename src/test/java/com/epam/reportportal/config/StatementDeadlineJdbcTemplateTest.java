@@ -0,0 +1,49 @@
+package com.epam.reportportal.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class StatementDeadlineJdbcTemplateTest {
+
+	private final StatementDeadlineJdbcTemplate jdbcTemplate = new StatementDeadlineJdbcTemplate(mock(DataSource.class));
+
+	@Test
+	void shouldBoundQueryTimeoutByDeadline() throws Exception {
+		final Statement statement = mock(Statement.class);
+
+		StatementDeadlineJdbcTemplate.withDeadline(System.currentTimeMillis() + 10_000, () -> {
+			jdbcTemplate.applyStatementSettings(statement);
+			return null;
+		});
+
+		verify(statement).setQueryTimeout(10);
+	}
+
+	@Test
+	void shouldNotChangeQueryTimeoutWithoutDeadline() throws Exception {
+		final Statement statement = mock(Statement.class);
+
+		jdbcTemplate.applyStatementSettings(statement);
+
+		verify(statement, never()).setQueryTimeout(anyInt());
+	}
+
+	@Test
+	void shouldFailStatementAfterDeadline() {
+		final Statement statement = mock(Statement.class);
+
+		Assertions.assertThrows(SQLTimeoutException.class,
+				() -> StatementDeadlineJdbcTemplate.withDeadline(System.currentTimeMillis() - 1, () -> {
+					jdbcTemplate.applyStatementSettings(statement);
+					return null;
+				})
+		);
+	}
+}
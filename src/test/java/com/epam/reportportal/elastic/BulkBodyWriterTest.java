@@ -0,0 +1,74 @@
+package com.epam.reportportal.elastic;
+
+import com.epam.reportportal.log.LogMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+class BulkBodyWriterTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final BulkBodyWriter bulkBodyWriter = new BulkBodyWriter();
+
+	@Test
+	void shouldWriteCreateActionAndDocumentPerLog() throws IOException {
+		final LocalDateTime logTime = LocalDateTime.of(2022, 3, 4, 5, 6, 7, 8_000_000);
+		final List<LogMessage> logs = List.of(new LogMessage(1L, logTime, "line\n\"quoted\" é", 10L, 100L, 1000L),
+				new LogMessage(2L, LocalDateTime.of(2022, 3, 4, 5, 6), null, 11L, 100L, 1000L)
+		);
+
+		final String[] lines = toString(bulkBodyWriter.write(logs)).split("\n", -1);
+
+		Assertions.assertEquals(5, lines.length);
+		Assertions.assertEquals("", lines[4]);
+		Assertions.assertEquals("{\"create\":{}}", lines[0]);
+		Assertions.assertEquals("{\"create\":{}}", lines[2]);
+
+		final JsonNode first = objectMapper.readTree(lines[1]);
+		Assertions.assertEquals(1L, first.get("id").asLong());
+		Assertions.assertEquals("line\n\"quoted\" é", first.get("message").asText());
+		Assertions.assertEquals(10L, first.get("itemId").asLong());
+		Assertions.assertEquals(logTime.toString(), first.get("@timestamp").asText());
+
+		final JsonNode second = objectMapper.readTree(lines[3]);
+		Assertions.assertFalse(second.has("message"));
+		Assertions.assertEquals("2022-03-04T05:06", second.get("@timestamp").asText());
+	}
+
+	@Test
+	void shouldEstimateMessageSizeExactly() {
+		final String message = "line\n\"quoted\" \\ é € \uD83D\uDE00 \u0001\tend";
+		final LogMessage log = new LogMessage(1L, LocalDateTime.now(), message, 10L, 100L, 1000L);
+		final LogMessage empty = new LogMessage(1L, log.getLogTime(), "", 10L, 100L, 1000L);
+
+		final long messageSize = bulkBodyWriter.write(List.of(log)).size() - bulkBodyWriter.write(List.of(empty)).size();
+
+		Assertions.assertEquals(messageSize, BulkBodyWriter.estimateSize(message));
+		Assertions.assertTrue(BulkBodyWriter.estimateSize(log) >= bulkBodyWriter.writeWithIndex(List.of(log)).size());
+	}
+
+	@Test
+	void shouldReuseBufferOnSameThread() {
+		final LogMessage log = new LogMessage(1L, LocalDateTime.now(), "message", 10L, 100L, 1000L);
+
+		final BulkBody first = bulkBodyWriter.write(List.of(log, log));
+		final int firstSize = first.size();
+		final BulkBody second = bulkBodyWriter.write(List.of(log));
+
+		Assertions.assertSame(first, second);
+		Assertions.assertEquals(firstSize / 2, second.size());
+	}
+
+	private static String toString(BulkBody body) throws IOException {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		body.writeTo(outputStream);
+		return outputStream.toString(StandardCharsets.UTF_8);
+	}
+}
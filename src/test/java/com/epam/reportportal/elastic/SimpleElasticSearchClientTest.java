@@ -0,0 +1,199 @@
+package com.epam.reportportal.elastic;
+
+import com.epam.reportportal.log.LogMessage;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+class SimpleElasticSearchClientTest {
+
+	private static final String SUCCESS = "{\"took\":1,\"errors\":false,\"items\":[]}";
+
+	private final List<String> requests = new CopyOnWriteArrayList<>();
+	private final List<String> bodies = new CopyOnWriteArrayList<>();
+	private final Deque<String> responses = new ConcurrentLinkedDeque<>();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private HttpServer server;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", exchange -> {
+			requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+			final InputStream body = "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding")) ?
+					new GZIPInputStream(exchange.getRequestBody()) :
+					exchange.getRequestBody();
+			bodies.add(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+			final byte[] response = responses.isEmpty() ? SUCCESS.getBytes() : responses.poll().getBytes();
+			exchange.sendResponseHeaders(200, response.length);
+			try (OutputStream outputStream = exchange.getResponseBody()) {
+				outputStream.write(response);
+			}
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void shouldSendSingleRequestForAllIndicesInMultiIndexMode() {
+		final SimpleElasticSearchClient client = client(true);
+
+		client.save(List.of(log(1L, 10L), log(2L, 20L), log(3L, 10L)));
+
+		Assertions.assertEquals(List.of("PUT /_bulk?refresh"), requests);
+		Assertions.assertTrue(bodies.get(0).contains("{\"create\":{\"_index\":\"logs-reportportal-1-20\"}}"));
+	}
+
+	@Test
+	void shouldSendRequestPerIndex() {
+		final SimpleElasticSearchClient client = client(false);
+
+		client.save(List.of(log(1L, 10L), log(2L, 20L), log(3L, 10L)));
+
+		Assertions.assertEquals(List.of("PUT /logs-reportportal-1-10/_bulk?refresh", "PUT /logs-reportportal-1-20/_bulk?refresh"), requests);
+	}
+
+	@Test
+	void shouldRetryOnlyTemporarilyRejectedItems() {
+		responses.add("{\"took\":1,\"errors\":true,\"items\":["
+				+ "{\"create\":{\"_index\":\"logs-reportportal-1-10\",\"status\":201}},"
+				+ "{\"create\":{\"_index\":\"logs-reportportal-1-10\",\"status\":429,\"error\":{\"type\":\"es_rejected_execution_exception\",\"reason\":\"queue is full\"}}},"
+				+ "{\"create\":{\"_index\":\"logs-reportportal-1-10\",\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\",\"reason\":\"failed to parse\",\"caused_by\":{\"type\":\"x\"}}}}"
+				+ "]}");
+		final SimpleElasticSearchClient client = client(true);
+
+		final BulkIndexingException exception = Assertions.assertThrows(BulkIndexingException.class,
+				() -> client.save(List.of(log(1L, 10L), log(2L, 10L), log(3L, 10L)))
+		);
+
+		Assertions.assertEquals(List.of(3L), exception.getFailedLogs().stream().map(LogMessage::getId).collect(Collectors.toList()));
+		Assertions.assertEquals(exception.getFailedLogs(), exception.getPermanentlyRejectedLogs());
+		Assertions.assertEquals(2, requests.size());
+		Assertions.assertEquals(2, bodies.get(1).split("\n").length);
+		Assertions.assertTrue(bodies.get(1).contains("\"id\":2"));
+		Assertions.assertEquals(1, meterRegistry.get("elasticsearch.bulk.rejections").tags("status", "429", "retryable", "true").counter().count());
+		Assertions.assertEquals(1, meterRegistry.get("elasticsearch.bulk.rejections").tags("status", "400", "retryable", "false").counter().count());
+		Assertions.assertEquals(2, meterRegistry.get("elasticsearch.bulk.rejections").tag("index", "logs-reportportal-1-10").counters().size());
+		Assertions.assertEquals(2, meterRegistry.get("elasticsearch.bulk.latency").timer().count());
+	}
+
+	@Test
+	void shouldThrowWhenItemsAreRejectedAfterAllRetries() {
+		final String rejected = "{\"took\":1,\"errors\":true,\"items\":[{\"create\":{\"status\":429}}]}";
+		for (int i = 0; i < 4; i++) {
+			responses.add(rejected);
+		}
+		final SimpleElasticSearchClient client = client(true);
+
+		final BulkIndexingException exception = Assertions.assertThrows(BulkIndexingException.class,
+				() -> client.save(new ArrayList<>(List.of(log(1L, 10L))))
+		);
+		Assertions.assertEquals(1, exception.getFailedLogs().size());
+		Assertions.assertEquals(4, requests.size());
+	}
+
+	@Test
+	void shouldSaveOtherIndicesWhenOneIndexRejectsLogs() {
+		final String rejected = "{\"took\":1,\"errors\":true,\"items\":[{\"create\":{\"status\":429}}]}";
+		for (int i = 0; i < 4; i++) {
+			responses.add(rejected);
+		}
+		final SimpleElasticSearchClient client = client(false);
+
+		final BulkIndexingException exception = Assertions.assertThrows(BulkIndexingException.class,
+				() -> client.save(List.of(log(1L, 10L), log(2L, 20L)))
+		);
+
+		Assertions.assertEquals(5, requests.size());
+		Assertions.assertEquals("PUT /logs-reportportal-1-20/_bulk?refresh", requests.get(4));
+		Assertions.assertEquals(1, exception.getFailedLogs().size());
+		Assertions.assertEquals(1L, exception.getFailedLogs().get(0).getId());
+	}
+
+	@Test
+	void shouldReportNeverSentLogsWhenRequestFails() {
+		final SimpleElasticSearchClient client = client(false);
+		server.removeContext("/");
+		server.createContext("/logs-reportportal-1-10", exchange -> {
+			requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+			exchange.sendResponseHeaders(500, -1);
+			exchange.close();
+		});
+
+		final BulkIndexingException exception = Assertions.assertThrows(BulkIndexingException.class,
+				() -> client.save(List.of(log(1L, 10L), log(2L, 20L), log(3L, 10L)))
+		);
+
+		Assertions.assertEquals(List.of("PUT /logs-reportportal-1-10/_bulk?refresh"), requests);
+		Assertions.assertEquals(List.of(1L, 3L, 2L), exception.getFailedLogs().stream().map(LogMessage::getId).collect(Collectors.toList()));
+		Assertions.assertNotNull(exception.getCause());
+	}
+
+	@Test
+	void shouldRefreshWrittenIndicesInsteadOfEveryRequest() {
+		final RefreshProperties refreshProperties = new RefreshProperties();
+		refreshProperties.setPolicy(RefreshPolicy.NONE);
+		refreshProperties.setPatterns(Map.of("logs-reportportal-1-20", RefreshPolicy.WAIT_FOR));
+		refreshProperties.setInterval(1000);
+		final SimpleElasticSearchClient client = client(true, refreshProperties);
+
+		client.save(List.of(log(1L, 10L)));
+		client.save(List.of(log(2L, 10L), log(3L, 20L)));
+		client.refreshWrittenIndices();
+		client.refreshWrittenIndices();
+
+		Assertions.assertEquals(3, requests.size());
+		Assertions.assertEquals("PUT /_bulk", requests.get(0));
+		Assertions.assertEquals("PUT /_bulk?refresh=wait_for", requests.get(1));
+		Assertions.assertTrue(requests.get(2).endsWith("/_refresh?ignore_unavailable=true"));
+		Assertions.assertTrue(requests.get(2).contains("logs-reportportal-1-10"));
+		Assertions.assertTrue(requests.get(2).contains("logs-reportportal-1-20"));
+	}
+
+	private SimpleElasticSearchClient client(boolean multiIndex) {
+		return client(multiIndex, new RefreshProperties());
+	}
+
+	private SimpleElasticSearchClient client(boolean multiIndex, RefreshProperties refreshProperties) {
+		final HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory();
+		requestFactory.setBufferRequestBody(false);
+		return new SimpleElasticSearchClient(requestFactory,
+				"http://localhost:" + server.getAddress().getPort(),
+				"",
+				"",
+				multiIndex,
+				3,
+				1,
+				true,
+				refreshProperties,
+				meterRegistry
+		);
+	}
+
+	private static LogMessage log(Long id, Long launchId) {
+		return new LogMessage(id, LocalDateTime.now(), "message " + id, 100L, launchId, 1L);
+	}
+}
@@ -0,0 +1,65 @@
+package com.epam.reportportal.jobs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.mockito.Mockito.mock;
+
+class BaseJobTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void shouldMeasureSuccessfulRun() {
+		final TestJob job = job();
+		job.setPerProjectMetrics(true);
+
+		job.logStart();
+		job.recordProcessed(1L, 3);
+		job.logFinish(2);
+
+		Assertions.assertEquals(1, meterRegistry.get("job.duration").tag("job", "TestJob").tag("outcome", "success").timer().count());
+		Assertions.assertEquals(5, meterRegistry.get("job.processed").tag("job", "TestJob").counter().count());
+		Assertions.assertEquals(3, meterRegistry.get("job.project.processed").tag("project", "1").counter().count());
+		Assertions.assertTrue(meterRegistry.get("job.last.success").tag("job", "TestJob").gauge().value() > 0);
+	}
+
+	@Test
+	void shouldNotCountByProjectByDefault() {
+		final TestJob job = job();
+
+		job.logStart();
+		job.recordProcessed(1L, 3);
+		job.logFinish();
+
+		Assertions.assertEquals(3, meterRegistry.get("job.processed").tag("job", "TestJob").counter().count());
+		Assertions.assertNull(meterRegistry.find("job.project.processed").counter());
+	}
+
+	@Test
+	void shouldCountFailedRun() {
+		final TestJob job = job();
+
+		job.logStart();
+		job.recordFailure();
+
+		Assertions.assertEquals(1, meterRegistry.get("job.failures").tag("job", "TestJob").counter().count());
+		Assertions.assertEquals(1, meterRegistry.get("job.duration").tag("outcome", "failure").timer().count());
+		Assertions.assertNull(meterRegistry.find("job.last.success").gauge());
+	}
+
+	private TestJob job() {
+		final TestJob job = new TestJob(mock(JdbcTemplate.class));
+		job.setMeterRegistry(meterRegistry);
+		return job;
+	}
+
+	private static class TestJob extends BaseJob {
+
+		TestJob(JdbcTemplate jdbcTemplate) {
+			super(jdbcTemplate);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.epam.reportportal.jobs.clean;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BaseCleanJobTest {
+
+	private static final ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final BaseCleanJob baseCleanJob = new BaseCleanJob(jdbcTemplate, taskExecutor, 200);
+
+	@BeforeAll
+	static void initExecutor() {
+		taskExecutor.setCorePoolSize(2);
+		taskExecutor.setMaxPoolSize(2);
+		taskExecutor.afterPropertiesSet();
+	}
+
+	@AfterAll
+	static void shutDownExecutor() {
+		taskExecutor.shutdown();
+	}
+
+	@Test
+	void shouldAggregateResultsOfAllProjects() {
+		final Map<Long, Duration> projects = Map.of(1L, Duration.ofDays(1), 2L, Duration.ofDays(2), 3L, Duration.ofDays(3));
+
+		final CleanupResult result = baseCleanJob.cleanProjects(projects, (projectId, duration) -> {
+			if (projectId == 2L) {
+				throw new IllegalStateException("Unable to clean");
+			}
+			return duration.toDays();
+		});
+
+		Assertions.assertEquals(4, result.getAffected());
+		Assertions.assertEquals(2, result.getCompleted());
+		Assertions.assertEquals(1, result.getFailed());
+		Assertions.assertEquals(0, result.getTimedOut());
+	}
+
+	@Test
+	void shouldInterruptProjectCleanupAfterTimeout() {
+		final CleanupResult result = baseCleanJob.cleanProjects(Map.of(1L, Duration.ofDays(1)), (projectId, duration) -> {
+			try {
+				Thread.sleep(10_000);
+				return 1;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return 0;
+			}
+		});
+
+		Assertions.assertEquals(1, result.getTimedOut());
+		Assertions.assertEquals(0, result.getCompleted());
+	}
+
+	@Test
+	void shouldCleanOnlyRowsExpiredSinceLastCleanup() {
+		final ExpirableRows rows = new ExpirableRows("log", "log_time");
+		final LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+		when(jdbcTemplate.queryForObject(contains("EXISTS"), eq(Boolean.class), any())).thenReturn(true);
+		when(jdbcTemplate.queryForObject(contains("min(log_time)"), eq(LocalDateTime.class), any())).thenReturn(now.minusHours(1),
+				now.minusDays(2)
+		);
+		final List<LocalDateTime> windows = new ArrayList<>();
+		final BaseCleanJob.WindowCleaner cleaner = (projectId, from, cutoff) -> {
+			windows.add(from);
+			return 1;
+		};
+
+		baseCleanJob.cleanExpiredRows(Map.of(1L, Duration.ofDays(1)), rows, cleaner);
+		// the oldest row expires in 23 hours
+		final CleanupResult skipped = baseCleanJob.cleanExpiredRows(Map.of(1L, Duration.ofDays(1)), rows, cleaner);
+		// the retention has changed
+		baseCleanJob.cleanExpiredRows(Map.of(1L, Duration.ofHours(1)), rows, cleaner);
+
+		Assertions.assertEquals(1, skipped.getSkipped());
+		Assertions.assertEquals(0, skipped.getCompleted());
+		Assertions.assertEquals(2, windows.size());
+		Assertions.assertNull(windows.get(0));
+		Assertions.assertNotNull(windows.get(1));
+		verify(jdbcTemplate).queryForObject(eq("SELECT EXISTS (SELECT 1 FROM log WHERE project_id = ? AND log_time <= ?::TIMESTAMP);"),
+				eq(Boolean.class),
+				any()
+		);
+		verify(jdbcTemplate).queryForObject(
+				eq("SELECT EXISTS (SELECT 1 FROM log WHERE project_id = ? AND log_time > ?::TIMESTAMP AND log_time <= ?::TIMESTAMP);"),
+				eq(Boolean.class),
+				any()
+		);
+	}
+
+	@Test
+	void shouldSkipCleanupWhenProbeFindsNothing() {
+		final ExpirableRows rows = new ExpirableRows("log", "log_time");
+		when(jdbcTemplate.queryForObject(contains("EXISTS"), eq(Boolean.class), any())).thenReturn(false);
+
+		final CleanupResult result = baseCleanJob.cleanExpiredRows(Map.of(1L, Duration.ofDays(1)), rows, (projectId, from, cutoff) -> {
+			throw new IllegalStateException("Nothing to clean");
+		});
+
+		Assertions.assertEquals(1, result.getCompleted());
+		Assertions.assertEquals(0, result.getAffected());
+	}
+}
@@ -0,0 +1,149 @@
+package com.epam.reportportal.jobs.clean;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+class ChunkedDeletionTest {
+
+	private final MapDeletionCheckpoints checkpoints = new MapDeletionCheckpoints();
+
+	@Test
+	void shouldDeleteByChunksUntilIncompleteChunk() {
+		final ChunksJdbcTemplate jdbcTemplate = new ChunksJdbcTemplate(new long[] { 2, 20 }, new long[] { 2, 40 }, new long[] { 1, 45 });
+		final ChunkedDeletion chunkedDeletion = new ChunkedDeletion(jdbcTemplate, checkpoints, 2, 0);
+
+		final long deleted = chunkedDeletion.delete("log", "project_id = ?", "log:1", 1L);
+
+		Assertions.assertEquals(5, deleted);
+		Assertions.assertEquals(List.of(0L, 20L, 40L), jdbcTemplate.lastIds);
+		Assertions.assertTrue(jdbcTemplate.queries.get(0).contains("WHERE project_id = ? AND id > ? ORDER BY id LIMIT ?"));
+	}
+
+	@Test
+	void shouldResumeFromLastDeletedIdAfterFailure() {
+		final ChunksJdbcTemplate jdbcTemplate = new ChunksJdbcTemplate(new long[] { 2, 20 }, null, new long[] { 1, 45 });
+		final ChunkedDeletion chunkedDeletion = new ChunkedDeletion(jdbcTemplate, checkpoints, 2, 0);
+
+		Assertions.assertThrows(QueryTimeoutException.class, () -> chunkedDeletion.delete("log", "project_id = ?", "log:1", 1L));
+		final long deleted = chunkedDeletion.delete("log", "project_id = ?", "log:1", 1L);
+
+		Assertions.assertEquals(1, deleted);
+		Assertions.assertEquals(List.of(0L, 20L, 20L), jdbcTemplate.lastIds);
+	}
+
+	@Test
+	void shouldResumeFromStoredCheckpointAfterRestart() {
+		final ChunksJdbcTemplate jdbcTemplate = new ChunksJdbcTemplate(new long[] { 2, 20 }, null, new long[] { 1, 45 });
+
+		Assertions.assertThrows(QueryTimeoutException.class,
+				() -> new ChunkedDeletion(jdbcTemplate, checkpoints, 2, 0).delete("log", "project_id = ?", "log:1", 1L)
+		);
+		final long deleted = new ChunkedDeletion(jdbcTemplate, checkpoints, 2, 0).delete("log", "project_id = ?", "log:1", 1L);
+
+		Assertions.assertEquals(1, deleted);
+		Assertions.assertEquals(List.of(0L, 20L, 20L), jdbcTemplate.lastIds);
+		Assertions.assertTrue(checkpoints.checkpoints.isEmpty());
+	}
+
+	@Test
+	void shouldResumeExpiredRowsDeletionWithCutoffOfInterruptedRun() {
+		final ExpirableRows rows = new ExpirableRows("log", "log_time");
+		final LocalDateTime interruptedCutoff = LocalDateTime.of(2021, 3, 1, 0, 0);
+		final LocalDateTime cutoff = interruptedCutoff.plusDays(1);
+		final ChunksJdbcTemplate jdbcTemplate = new ChunksJdbcTemplate(new long[] { 2, 20 },
+				null,
+				new long[] { 1, 5 },
+				new long[] { 1, 45 }
+		);
+		final ChunkedDeletion chunkedDeletion = new ChunkedDeletion(jdbcTemplate, checkpoints, 2, 0);
+
+		Assertions.assertThrows(QueryTimeoutException.class, () -> chunkedDeletion.deleteExpired(rows, 1L, null, interruptedCutoff));
+		Assertions.assertEquals(interruptedCutoff, checkpoints.checkpoints.get("log:1").cutoff);
+		final long deleted = chunkedDeletion.deleteExpired(rows, 1L, null, cutoff);
+
+		Assertions.assertEquals(2, deleted);
+		// rows up to the checkpoint expired since the interrupted cutoff, then the rest after the checkpoint
+		Assertions.assertEquals(List.of(0L, 20L, 0L, 20L), jdbcTemplate.lastIds);
+		Assertions.assertTrue(jdbcTemplate.queries.get(2)
+				.contains("WHERE project_id = ? AND log_time > ?::TIMESTAMP AND log_time <= ?::TIMESTAMP AND id <= ? AND id > ?"));
+		Assertions.assertEquals(List.of(1L, interruptedCutoff, cutoff, 20L, 0L, 2), jdbcTemplate.args.get(2));
+		Assertions.assertTrue(checkpoints.checkpoints.isEmpty());
+	}
+
+	@Test
+	void shouldStartOverWhenArgumentsChange() {
+		final ChunksJdbcTemplate jdbcTemplate = new ChunksJdbcTemplate(new long[] { 2, 20 }, null, new long[] { 1, 45 });
+		final ChunkedDeletion chunkedDeletion = new ChunkedDeletion(jdbcTemplate, checkpoints, 2, 0);
+
+		Assertions.assertThrows(QueryTimeoutException.class, () -> chunkedDeletion.delete("log", "project_id = ?", "log:1", 1L));
+		chunkedDeletion.delete("log", "project_id = ?", "log:1", 2L);
+
+		Assertions.assertEquals(List.of(0L, 20L, 0L), jdbcTemplate.lastIds);
+	}
+
+	/**
+	 * Returns the given chunk results one by one, {@code null} stands for a failed statement.
+	 */
+	private static class ChunksJdbcTemplate extends JdbcTemplate {
+
+		private final Deque<long[]> chunks = new LinkedList<>();
+		private final List<String> queries = new ArrayList<>();
+		private final List<Long> lastIds = new ArrayList<>();
+		private final List<List<Object>> args = new ArrayList<>();
+
+		private ChunksJdbcTemplate(long[]... chunks) {
+			for (long[] chunk : chunks) {
+				this.chunks.add(chunk);
+			}
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T queryForObject(String sql, RowMapper<T> rowMapper, Object... args) {
+			queries.add(sql);
+			lastIds.add((Long) args[args.length - 2]);
+			this.args.add(new ArrayList<>(Arrays.asList(args)));
+			final long[] chunk = chunks.poll();
+			if (chunk == null) {
+				throw new QueryTimeoutException("Statement timeout");
+			}
+			return (T) chunk;
+		}
+	}
+
+	private static class MapDeletionCheckpoints extends DeletionCheckpoints {
+
+		private final Map<String, Checkpoint> checkpoints = new HashMap<>();
+
+		private MapDeletionCheckpoints() {
+			super(null);
+		}
+
+		@Override
+		Checkpoint find(String checkpointKey) {
+			return checkpoints.get(checkpointKey);
+		}
+
+		@Override
+		void save(String checkpointKey, Checkpoint checkpoint) {
+			checkpoints.put(checkpointKey, checkpoint);
+		}
+
+		@Override
+		void remove(String checkpointKey) {
+			checkpoints.remove(checkpointKey);
+		}
+	}
+}
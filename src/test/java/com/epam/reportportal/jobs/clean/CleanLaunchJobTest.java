@@ -0,0 +1,82 @@
+package com.epam.reportportal.jobs.clean;
+
+import com.epam.reportportal.analyzer.index.IndexerServiceClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CleanLaunchJobTest {
+
+	private static final String SELECT_LAUNCH_ID_CHUNK_QUERY = "SELECT id FROM launch WHERE project_id = ? AND start_time <= ?::TIMESTAMP "
+			+ "AND id > ? ORDER BY id LIMIT ?;";
+	private static final String DELETE_CLUSTER_QUERY = "DELETE FROM clusters WHERE clusters.launch_id = ANY(?::BIGINT[]);";
+	private static final String DELETE_LAUNCH_QUERY = "DELETE FROM launch WHERE id = ANY(?::BIGINT[]);";
+
+	private static final ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final IndexerServiceClient indexerServiceClient = mock(IndexerServiceClient.class);
+
+	private final CleanLaunchJob cleanLaunchJob = new CleanLaunchJob(jdbcTemplate,
+			taskExecutor,
+			60_000,
+			mock(CleanLogJob.class),
+			indexerServiceClient,
+			mock(PlatformTransactionManager.class),
+			2,
+			1000,
+			0
+	);
+
+	@BeforeAll
+	static void initExecutor() {
+		taskExecutor.setCorePoolSize(1);
+		taskExecutor.setMaxPoolSize(1);
+		taskExecutor.afterPropertiesSet();
+	}
+
+	@AfterAll
+	static void shutDownExecutor() {
+		taskExecutor.shutdown();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void shouldDeleteLaunchesByChunksOfIdArrays() {
+		when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class), any())).thenReturn(Map.of(1L, Duration.ofDays(1)));
+		when(jdbcTemplate.queryForList(eq(SELECT_LAUNCH_ID_CHUNK_QUERY), eq(Long.class), any(), any(), any(), any())).thenReturn(
+				List.of(10L, 11L),
+				List.of(12L),
+				List.of()
+		);
+		when(jdbcTemplate.queryForObject(contains("DELETE FROM"), any(RowMapper.class), any())).thenReturn(new long[] { 0, 0 });
+		when(jdbcTemplate.queryForObject(contains("EXISTS"), eq(Boolean.class), any())).thenReturn(true);
+		when(jdbcTemplate.update(eq(DELETE_LAUNCH_QUERY), anyString())).thenReturn(2, 1);
+
+		cleanLaunchJob.removeLaunches();
+
+		verify(jdbcTemplate).queryForList(eq(SELECT_LAUNCH_ID_CHUNK_QUERY), eq(Long.class), eq(1L), any(LocalDateTime.class), eq(11L), eq(2));
+		verify(jdbcTemplate).update(DELETE_CLUSTER_QUERY, "{10,11}");
+		verify(jdbcTemplate).update(DELETE_LAUNCH_QUERY, "{10,11}");
+		verify(jdbcTemplate).update(DELETE_LAUNCH_QUERY, "{12}");
+		// logs of launches, logs of test items and test items of every chunk
+		verify(jdbcTemplate, times(6)).queryForObject(contains("DELETE FROM"), any(RowMapper.class), any());
+		verify(indexerServiceClient).removeFromIndexLessThanLaunchDate(eq(1L), any(LocalDateTime.class));
+	}
+}
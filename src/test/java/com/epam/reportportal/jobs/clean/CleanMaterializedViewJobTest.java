@@ -0,0 +1,80 @@
+package com.epam.reportportal.jobs.clean;
+
+import com.epam.reportportal.model.StaleMaterializedView;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CleanMaterializedViewJobTest {
+
+	private static final String DROP_VIEWS = "DROP MATERIALIZED VIEW IF EXISTS \"widget_1\", \"widget-2\"";
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+	private final CleanMaterializedViewJob cleanMaterializedViewJob = new CleanMaterializedViewJob(jdbcTemplate,
+			100,
+			7200,
+			5000,
+			namedParameterJdbcTemplate,
+			transactionManager
+	);
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void shouldDropBatchWithSingleStatementAndRetryLockedBatch() {
+		when(namedParameterJdbcTemplate.query(anyString(), anyMap(), any(RowMapper.class))).thenReturn(List.of(view(1L, "widget_1"),
+				view(2L, "widget-2"),
+				view(3L, "bad name")
+		), List.of());
+		when(namedParameterJdbcTemplate.queryForList(anyString(), eq(Map.of("names", List.of("widget_1", "widget-2"))))).thenReturn(List.of(
+				Map.of("name", "widget_1", "existing", true),
+				Map.of("name", "widget-2", "existing", true)
+		));
+		doThrow(new CannotAcquireLockException("lock timeout")).doNothing().when(jdbcTemplate).execute(DROP_VIEWS);
+
+		cleanMaterializedViewJob.execute();
+
+		verify(jdbcTemplate, times(2)).execute(DROP_VIEWS);
+		verify(jdbcTemplate, times(2)).execute("SET LOCAL lock_timeout = 5000");
+		verify(transactionManager).rollback(any());
+		verify(namedParameterJdbcTemplate, times(2)).query(anyString(), anyMap(), any(RowMapper.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void shouldDropOnlyExistingViewsOfDeletedRows() {
+		when(namedParameterJdbcTemplate.query(anyString(), anyMap(), any(RowMapper.class))).thenReturn(List.of(view(1L, "widget_1"),
+				view(2L, "widget-2")
+		), List.of());
+		when(namedParameterJdbcTemplate.queryForList(anyString(), eq(Map.of("names", List.of("widget_1", "widget-2"))))).thenReturn(List.of(
+				Map.of("name", "widget_1", "existing", true),
+				Map.of("name", "widget-2", "existing", false)
+		));
+
+		cleanMaterializedViewJob.execute();
+
+		verify(jdbcTemplate).execute("DROP MATERIALIZED VIEW IF EXISTS \"widget_1\"");
+		verify(jdbcTemplate, never()).execute(DROP_VIEWS);
+	}
+
+	private static StaleMaterializedView view(Long id, String name) {
+		final StaleMaterializedView view = new StaleMaterializedView();
+		view.setId(id);
+		view.setName(name);
+		return view;
+	}
+}
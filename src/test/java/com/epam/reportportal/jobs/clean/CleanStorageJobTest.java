@@ -0,0 +1,104 @@
+package com.epam.reportportal.jobs.clean;
+
+import com.epam.reportportal.storage.DataStorageService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CleanStorageJobTest {
+
+	private static final String SELECT_DATA_CHUNK_QUERY = "SELECT id, file_id, thumbnail_id FROM attachment_deletion WHERE id > ? ORDER BY id LIMIT ?";
+	private static final String DELETE_DATA_QUERY = "DELETE FROM attachment_deletion WHERE id IN (:ids)";
+
+	private static final ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+	private final DataStorageService storageService = mock(DataStorageService.class);
+
+	private final CleanStorageJob cleanStorageJob = new CleanStorageJob(jdbcTemplate,
+			namedParameterJdbcTemplate,
+			storageService,
+			taskExecutor,
+			2,
+			60_000
+	);
+
+	@BeforeAll
+	static void initExecutor() {
+		taskExecutor.setCorePoolSize(2);
+		taskExecutor.setMaxPoolSize(2);
+		taskExecutor.afterPropertiesSet();
+	}
+
+	@AfterAll
+	static void shutDownExecutor() {
+		taskExecutor.shutdown();
+	}
+
+	@Test
+	void shouldRemoveOnlyRowsWithDeletedFiles() {
+		mockChunk(0L, row(1L, "1/file1", "1/thumbnail1"), row(2L, "1/file2", null));
+		mockChunk(2L, row(3L, "1/file3", null));
+		when(storageService.delete(anyCollection())).thenAnswer(invocation -> {
+			final Collection<String> paths = invocation.getArgument(0);
+			return paths.stream().collect(Collectors.toMap(Function.identity(), path -> !"1/file3".equals(path)));
+		});
+
+		cleanStorageJob.execute();
+
+		verify(storageService).delete(List.of("1/file1", "1/thumbnail1", "1/file2"));
+		verify(storageService).delete(List.of("1/file3"));
+		verify(namedParameterJdbcTemplate).update(DELETE_DATA_QUERY, Map.of("ids", List.of(1L, 2L)));
+		verify(namedParameterJdbcTemplate, times(1)).update(eq(DELETE_DATA_QUERY), anyMap());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void mockChunk(Long lastId, Object[]... rows) {
+		when(jdbcTemplate.query(eq(SELECT_DATA_CHUNK_QUERY), any(RowMapper.class), eq(lastId), eq(2))).thenAnswer(invocation -> {
+			final RowMapper<Object> rowMapper = invocation.getArgument(1);
+			final List<Object> result = new ArrayList<>();
+			for (Object[] row : rows) {
+				result.add(rowMapper.mapRow(resultSet(row), result.size()));
+			}
+			return result;
+		});
+	}
+
+	private static ResultSet resultSet(Object[] row) throws SQLException {
+		final ResultSet resultSet = mock(ResultSet.class);
+		when(resultSet.getLong("id")).thenReturn((Long) row[0]);
+		when(resultSet.getString("file_id")).thenReturn((String) row[1]);
+		when(resultSet.getString("thumbnail_id")).thenReturn((String) row[2]);
+		return resultSet;
+	}
+
+	private static Object[] row(Long id, String filePath, String thumbnailPath) {
+		return new Object[] { id, encode(filePath), encode(thumbnailPath) };
+	}
+
+	private static String encode(String path) {
+		return path == null ? null : Base64.getUrlEncoder().encodeToString(path.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,157 @@
+package com.epam.reportportal.jobs.clean;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PartitionRetentionTest {
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+	private final PartitionRetention partitionRetention = new PartitionRetention(jdbcTemplate, transactionTemplate, 1000);
+
+	@Test
+	void parseUpperBound() {
+		assertEquals(LocalDateTime.of(2021, 3, 1, 0, 0),
+				PartitionRetention.parseUpperBound("FOR VALUES FROM ('2021-02-01 00:00:00') TO ('2021-03-01 00:00:00')")
+		);
+		assertEquals(LocalDateTime.of(2021, 3, 1, 0, 0), PartitionRetention.parseUpperBound("FOR VALUES FROM ('2021-02-01') TO ('2021-03-01')"));
+		assertEquals(LocalDateTime.of(2021, 2, 28, 22, 0),
+				PartitionRetention.parseUpperBound("FOR VALUES FROM ('2021-02-01 00:00:00+02') TO ('2021-03-01 00:00:00+02')")
+		);
+		assertNull(PartitionRetention.parseUpperBound("FOR VALUES FROM ('2021-02-01 00:00:00') TO (MAXVALUE)"));
+		assertNull(PartitionRetention.parseUpperBound("DEFAULT"));
+		assertNull(PartitionRetention.parseUpperBound(null));
+	}
+
+	@Test
+	void dropExpiredPartitionOfRetainedProjects() throws SQLException {
+		final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+		mockPartitions(partition("log_old", today.minusDays(60), today.minusDays(30), 100),
+				partition("log_current", today.minusDays(30), today.plusDays(1), 200)
+		);
+		mockTransaction();
+		mockProjectIds(1L);
+
+		final DroppedPartitions dropped = partitionRetention.dropExpired("log",
+				"log_time",
+				Map.of(1L, Duration.ofDays(7), 2L, Duration.ofDays(14)),
+				"INSERT INTO copy SELECT * FROM %s"
+		);
+
+		assertEquals(100, dropped.getRows());
+		assertEquals(Set.of(1L), dropped.getProjectIds());
+		// projects are found before the lock is taken
+		final InOrder inOrder = inOrder(jdbcTemplate);
+		inOrder.verify(jdbcTemplate).query(eq("SELECT DISTINCT project_id FROM log_old;"), any(RowCallbackHandler.class));
+		inOrder.verify(jdbcTemplate).execute("LOCK TABLE log_old IN SHARE MODE");
+		verify(jdbcTemplate).update("INSERT INTO copy SELECT * FROM log_old");
+		verify(jdbcTemplate).execute("ALTER TABLE log DETACH PARTITION log_old");
+		verify(jdbcTemplate).execute("DROP TABLE log_old");
+		verify(jdbcTemplate, never()).execute("DROP TABLE log_current");
+	}
+
+	@Test
+	void keepPartitionWithRowsOfOtherProjects() throws SQLException {
+		final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+		mockPartitions(partition("log_old", today.minusDays(60), today.minusDays(30), 100));
+		mockTransaction();
+		mockProjectIds(3L);
+
+		final DroppedPartitions dropped = partitionRetention.dropExpired("log", "log_time", Map.of(1L, Duration.ofDays(7)), null);
+
+		assertEquals(0, dropped.getRows());
+		assertTrue(dropped.getProjectIds().isEmpty());
+		verify(jdbcTemplate, never()).execute("DROP TABLE log_old");
+		verifyNoInteractions(transactionTemplate);
+	}
+
+	@Test
+	void keepPartitionWithRowsOfOtherProjectsInsertedBeforeLock() throws SQLException {
+		final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+		mockPartitions(partition("log_old", today.minusDays(60), today.minusDays(30), 100));
+		mockTransaction();
+		mockProjectIds(1L);
+		when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), any())).thenReturn(true);
+
+		final DroppedPartitions dropped = partitionRetention.dropExpired("log", "log_time", Map.of(1L, Duration.ofDays(7)), null);
+
+		assertEquals(0, dropped.getRows());
+		verify(jdbcTemplate).queryForObject(
+				"SELECT EXISTS (SELECT 1 FROM log_old WHERE project_id IS NULL OR project_id <> ALL(?::BIGINT[]));",
+				Boolean.class,
+				"{1}"
+		);
+		verify(jdbcTemplate, never()).execute("ALTER TABLE log DETACH PARTITION log_old");
+		verify(jdbcTemplate, never()).execute("DROP TABLE log_old");
+	}
+
+	@Test
+	void skipTablesWithoutRetainedProjects() {
+		final DroppedPartitions dropped = partitionRetention.dropExpired("log", "log_time", Collections.emptyMap(), null);
+
+		assertEquals(0, dropped.getRows());
+		verifyNoInteractions(jdbcTemplate, transactionTemplate);
+	}
+
+	private static ResultSet partition(String name, LocalDate from, LocalDate to, long rows) throws SQLException {
+		final ResultSet rs = mock(ResultSet.class);
+		when(rs.getString("name")).thenReturn(name);
+		when(rs.getString("bound")).thenReturn("FOR VALUES FROM ('" + from + " 00:00:00') TO ('" + to + " 00:00:00')");
+		when(rs.getLong("row_estimate")).thenReturn(rows);
+		return rs;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void mockPartitions(ResultSet... partitions) {
+		when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("log"), eq("RANGE (log_time)"))).thenAnswer(invocation -> {
+			final RowMapper<Object> mapper = invocation.getArgument(1);
+			final List<Object> result = new ArrayList<>();
+			for (ResultSet rs : partitions) {
+				result.add(mapper.mapRow(rs, result.size()));
+			}
+			return result;
+		});
+	}
+
+	private void mockTransaction() {
+		when(transactionTemplate.execute(any())).thenAnswer((InvocationOnMock invocation) -> {
+			final TransactionCallback<?> callback = invocation.getArgument(0);
+			return callback.doInTransaction(null);
+		});
+	}
+
+	private void mockProjectIds(long projectId) throws SQLException {
+		final ResultSet rs = mock(ResultSet.class);
+		when(rs.getLong(1)).thenReturn(projectId);
+		doAnswer(invocation -> {
+			final RowCallbackHandler handler = invocation.getArgument(1);
+			handler.processRow(rs);
+			return null;
+		}).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+	}
+}
@@ -0,0 +1,72 @@
+package com.epam.reportportal.jobs.clean;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RetentionPoliciesTest {
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void shouldLoadPoliciesOncePerRefreshInterval() {
+		final RetentionPolicies retentionPolicies = new RetentionPolicies(jdbcTemplate, 60_000);
+		when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class), eq("job.keepLogs"))).thenReturn(Map.of(1L, Duration.ofDays(1)));
+
+		Assertions.assertEquals(Map.of(1L, Duration.ofDays(1)), retentionPolicies.get("job.keepLogs"));
+		Assertions.assertEquals(Map.of(1L, Duration.ofDays(1)), retentionPolicies.get("job.keepLogs"));
+
+		verify(jdbcTemplate, times(1)).query(anyString(), any(ResultSetExtractor.class), eq("job.keepLogs"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void shouldReloadPoliciesAfterRefreshInterval() {
+		final RetentionPolicies retentionPolicies = new RetentionPolicies(jdbcTemplate, 0);
+		when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class), eq("job.keepLogs"))).thenReturn(Map.of(1L, Duration.ofDays(1)),
+				Map.of(1L, Duration.ofDays(2))
+		);
+
+		retentionPolicies.get("job.keepLogs");
+
+		Assertions.assertEquals(Map.of(1L, Duration.ofDays(2)), retentionPolicies.get("job.keepLogs"));
+		Assertions.assertEquals(Map.of("job.keepLogs", Map.of(1L, Duration.ofDays(2))), retentionPolicies.getLoaded());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void shouldReloadInvalidatedPolicies() {
+		final RetentionPolicies retentionPolicies = new RetentionPolicies(jdbcTemplate, 60_000);
+		when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class), eq("job.keepLogs"))).thenReturn(Map.of(1L, Duration.ofDays(1)),
+				Map.of(1L, Duration.ofDays(2))
+		);
+
+		retentionPolicies.get("job.keepLogs");
+		retentionPolicies.invalidate();
+
+		Assertions.assertEquals(Map.of(1L, Duration.ofDays(2)), retentionPolicies.get("job.keepLogs"));
+		Assertions.assertEquals(Map.of(1L, Duration.ofDays(2)), retentionPolicies.get("job.keepLogs"));
+		verify(jdbcTemplate, times(2)).query(anyString(), any(ResultSetExtractor.class), eq("job.keepLogs"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void shouldKeepInstanceOfUnchangedPolicies() {
+		final RetentionPolicies retentionPolicies = new RetentionPolicies(jdbcTemplate, 0);
+		when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class), eq("job.keepLogs"))).thenReturn(Map.of(1L, Duration.ofDays(1)),
+				Map.of(1L, Duration.ofDays(1))
+		);
+
+		Assertions.assertSame(retentionPolicies.get("job.keepLogs"), retentionPolicies.get("job.keepLogs"));
+	}
+}
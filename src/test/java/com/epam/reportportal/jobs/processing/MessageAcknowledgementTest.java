@@ -0,0 +1,38 @@
+package com.epam.reportportal.jobs.processing;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class MessageAcknowledgementTest {
+
+	private final Channel channel = mock(Channel.class);
+
+	@Test
+	void shouldSettleMessageOnce() throws IOException {
+		final MessageAcknowledgement acknowledgement = new MessageAcknowledgement(channel, 7L);
+
+		acknowledgement.onFlushed();
+		acknowledgement.onFailed(new IllegalStateException("Unable to save"));
+		acknowledgement.onFlushed();
+
+		verify(channel).basicAck(7L, false);
+		verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+	}
+
+	@Test
+	void shouldNotAcknowledgeRejectedMessage() throws IOException {
+		final MessageAcknowledgement acknowledgement = new MessageAcknowledgement(channel, 7L);
+
+		acknowledgement.onFailed(new IllegalStateException("Unable to save"));
+		acknowledgement.onFlushed();
+
+		verify(channel).basicNack(7L, false, true);
+		verify(channel, never()).basicAck(anyLong(), anyBoolean());
+	}
+}
@@ -6,11 +6,19 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.sql.ResultSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 /**
@@ -24,12 +32,21 @@ class CalculateAllocatedStorageJobTest {
 			"SELECT coalesce(sum(file_size), 0) FROM attachment WHERE attachment.project_id = ?";
 	private static final String UPDATE_ALLOCATED_STORAGE_BY_PROJECT_ID_QUERY =
 			"UPDATE project SET allocated_storage = ? WHERE id = ?";
+	private static final String UPDATE_CHANGED_ALLOCATED_STORAGE_BY_PROJECT_ID_QUERY =
+			"UPDATE project SET allocated_storage = ? WHERE id = ? AND allocated_storage IS DISTINCT FROM ?";
+	private static final String UPDATE_ALLOCATED_STORAGE_FROM_VALUES_QUERY_PREFIX =
+			"UPDATE project p SET allocated_storage = v.total FROM (VALUES ";
+	private static final String UPDATE_ALLOCATED_STORAGE_FROM_VALUES_QUERY_SUFFIX =
+			") AS v(id, total) WHERE p.id = v.id AND p.allocated_storage IS DISTINCT FROM v.total";
+	private static final String SELECT_MAX_ATTACHMENT_ID_QUERY = "SELECT coalesce(max(id), 0) FROM attachment";
+	private static final String SELECT_PROJECT_IDS_WITH_NEW_ATTACHMENTS_QUERY =
+			"SELECT DISTINCT project_id FROM attachment WHERE id > ? AND id <= ? AND project_id IS NOT NULL";
 
 	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
 
-	private final CalculateAllocatedStorageJob calculateAllocatedStorageJob = new CalculateAllocatedStorageJob(taskExecutor,
-			jdbcTemplate
-	);
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+	private final CalculateAllocatedStorageJob calculateAllocatedStorageJob = job(CalculateAllocatedStorageJob.PROJECT_MODE);
 
 	@BeforeAll
 	static void initExecutor() {
@@ -64,4 +81,102 @@ class CalculateAllocatedStorageJobTest {
 		Assertions.assertTrue(projectIds.containsAll(updatedIds));
 	}
 
-}
\ No newline at end of file
+	@Test
+	void shouldRecalculateOnlyProjectsWithNewAttachmentsInIncrementalMode() {
+		final CalculateAllocatedStorageJob incrementalJob = job(CalculateAllocatedStorageJob.INCREMENTAL_MODE);
+		when(jdbcTemplate.queryForList(SELECT_PROJECT_IDS_QUERY, Long.class)).thenReturn(List.of(1L, 2L, 3L));
+		when(jdbcTemplate.queryForObject(SELECT_MAX_ATTACHMENT_ID_QUERY, Long.class)).thenReturn(100L, 150L, 150L);
+		when(jdbcTemplate.queryForList(SELECT_PROJECT_IDS_WITH_NEW_ATTACHMENTS_QUERY, Long.class, 100L, 150L)).thenReturn(List.of(2L));
+		when(jdbcTemplate.queryForObject(eq(SELECT_FILE_SIZE_SUM_BY_PROJECT_ID_QUERY), eq(Long.class), anyLong())).thenReturn(1000L);
+
+		incrementalJob.calculate();
+		incrementalJob.calculate();
+		incrementalJob.calculate();
+
+		// all projects on the first run, the project with new attachments on the second one, nothing on the third one
+		verify(jdbcTemplate, times(4)).update(eq(UPDATE_CHANGED_ALLOCATED_STORAGE_BY_PROJECT_ID_QUERY), anyLong(), anyLong(), anyLong());
+		verify(jdbcTemplate, times(2)).update(UPDATE_CHANGED_ALLOCATED_STORAGE_BY_PROJECT_ID_QUERY, 1000L, 2L, 1000L);
+		verify(jdbcTemplate, never()).update(eq(UPDATE_ALLOCATED_STORAGE_BY_PROJECT_ID_QUERY), anyLong(), anyLong());
+	}
+
+	@Test
+	void shouldRecalculateOnlyProjectsWithDeletedAttachmentsInIncrementalMode() {
+		final CalculateAllocatedStorageJob incrementalJob = job(CalculateAllocatedStorageJob.INCREMENTAL_MODE);
+		final AllocatedStorageChanges changes = new MapAllocatedStorageChanges();
+		incrementalJob.setAllocatedStorageChanges(changes);
+		when(jdbcTemplate.queryForList(SELECT_PROJECT_IDS_QUERY, Long.class)).thenReturn(List.of(1L, 2L, 3L));
+		when(jdbcTemplate.queryForObject(SELECT_MAX_ATTACHMENT_ID_QUERY, Long.class)).thenReturn(100L);
+		when(jdbcTemplate.queryForObject(eq(SELECT_FILE_SIZE_SUM_BY_PROJECT_ID_QUERY), eq(Long.class), anyLong())).thenReturn(1000L);
+
+		incrementalJob.calculate();
+		changes.recordDeletion(3L, 5);
+		incrementalJob.calculate();
+		incrementalJob.calculate();
+
+		// all projects on the first run, the project with deleted attachments on the second one, nothing on the third one
+		verify(jdbcTemplate, times(4)).update(eq(UPDATE_CHANGED_ALLOCATED_STORAGE_BY_PROJECT_ID_QUERY), anyLong(), anyLong(), anyLong());
+		verify(jdbcTemplate, times(2)).update(UPDATE_CHANGED_ALLOCATED_STORAGE_BY_PROJECT_ID_QUERY, 1000L, 3L, 1000L);
+	}
+
+	@Test
+	void shouldKeepDeletionsWhenIncrementalCalculationFails() {
+		final CalculateAllocatedStorageJob incrementalJob = job(CalculateAllocatedStorageJob.INCREMENTAL_MODE);
+		final AllocatedStorageChanges changes = new MapAllocatedStorageChanges();
+		incrementalJob.setAllocatedStorageChanges(changes);
+		changes.recordDeletion(2L, 1);
+		when(jdbcTemplate.queryForList(SELECT_PROJECT_IDS_QUERY, Long.class)).thenThrow(new IllegalStateException("Unavailable"));
+		when(jdbcTemplate.queryForObject(SELECT_MAX_ATTACHMENT_ID_QUERY, Long.class)).thenReturn(100L);
+
+		Assertions.assertThrows(IllegalStateException.class, incrementalJob::calculate);
+
+		Assertions.assertEquals(Map.of(2L, 1L), changes.drain());
+	}
+
+	@Test
+	void shouldWriteOnlyChangedTotalsInChunksInAggregateMode() {
+		doAnswer(invocation -> {
+			final RowCallbackHandler handler = invocation.getArgument(1);
+			for (long id = 1; id <= 3; id++) {
+				final ResultSet resultSet = mock(ResultSet.class);
+				when(resultSet.getLong("id")).thenReturn(id);
+				when(resultSet.getLong("total")).thenReturn(id * 100);
+				handler.processRow(resultSet);
+			}
+			return null;
+		}).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+		when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(2, 1);
+
+		job(CalculateAllocatedStorageJob.AGGREGATE_MODE).calculate();
+
+		verify(jdbcTemplate).update(UPDATE_ALLOCATED_STORAGE_FROM_VALUES_QUERY_PREFIX + "(?::BIGINT, ?::BIGINT),(?::BIGINT, ?::BIGINT)"
+				+ UPDATE_ALLOCATED_STORAGE_FROM_VALUES_QUERY_SUFFIX, 1L, 100L, 2L, 200L);
+		verify(jdbcTemplate).update(UPDATE_ALLOCATED_STORAGE_FROM_VALUES_QUERY_PREFIX + "(?::BIGINT, ?::BIGINT)"
+				+ UPDATE_ALLOCATED_STORAGE_FROM_VALUES_QUERY_SUFFIX, 3L, 300L);
+		verify(jdbcTemplate, never()).queryForObject(eq(SELECT_FILE_SIZE_SUM_BY_PROJECT_ID_QUERY), eq(Long.class), anyLong());
+	}
+
+	private CalculateAllocatedStorageJob job(String mode) {
+		return new CalculateAllocatedStorageJob(taskExecutor, jdbcTemplate, transactionManager, mode, 100, 2);
+	}
+
+	private static class MapAllocatedStorageChanges extends AllocatedStorageChanges {
+
+		private final Map<Long, Long> deletedAttachments = new HashMap<>();
+
+		private MapAllocatedStorageChanges() {
+			super(null);
+		}
+
+		@Override
+		public void recordDeletion(Long projectId, long count) {
+			deletedAttachments.merge(projectId, count, (previous, next) -> previous < 0 || next < 0 ? -1 : previous + next);
+		}
+
+		@Override
+		public Map<Long, Long> drain() {
+			final Map<Long, Long> drained = new HashMap<>(deletedAttachments);
+			deletedAttachments.clear();
+			return drained;
+		}
+	}
+}
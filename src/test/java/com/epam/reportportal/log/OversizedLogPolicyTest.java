@@ -0,0 +1,40 @@
+package com.epam.reportportal.log;
+
+import com.epam.reportportal.elastic.BulkBodyWriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class OversizedLogPolicyTest {
+
+	private static final String MESSAGE = "0123456789\uD83D\uDE00abcdefghij\"quoted\"";
+
+	@Test
+	void shouldTruncateMessageToMaxSize() {
+		final List<LogMessage> logs = OversizedLogPolicy.TRUNCATE.apply(log(), 25);
+
+		Assertions.assertEquals(1, logs.size());
+		Assertions.assertEquals("0123456789" + OversizedLogPolicy.TRUNCATED, logs.get(0).getLogMessage());
+		Assertions.assertEquals(100L, logs.get(0).getLaunchId());
+	}
+
+	@Test
+	void shouldSplitMessageWithoutBreakingCharacters() {
+		final List<LogMessage> logs = OversizedLogPolicy.SPLIT.apply(log(), 12);
+
+		Assertions.assertEquals(List.of("0123456789", "\uD83D\uDE00", "abcdefghij\"", "quoted\""),
+				logs.stream().map(LogMessage::getLogMessage).collect(Collectors.toList())
+		);
+		logs.forEach(log -> {
+			Assertions.assertTrue(BulkBodyWriter.estimateSize(log.getLogMessage()) <= 12);
+			Assertions.assertEquals(1L, log.getId());
+		});
+	}
+
+	private static LogMessage log() {
+		return new LogMessage(1L, LocalDateTime.now(), MESSAGE, 10L, 100L, 1000L);
+	}
+}
@@ -0,0 +1,138 @@
+package com.epam.reportportal.log.spill;
+
+import com.epam.reportportal.log.LogMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+class LogSpillStoreTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void shouldReplaySpilledLogsAfterRestart() throws IOException {
+		final List<LogMessage> logs = logs(1, 10);
+		logs.add(new LogMessage(11L, null, null, null, 5L, 1L));
+		final LogSpillStore store = new LogSpillStore(directory.toString(), 1024 * 1024, 10);
+		Assertions.assertTrue(store.append(logs));
+
+		final LogSpillStore restarted = new LogSpillStore(directory.toString(), 1024 * 1024, 10);
+		final List<LogMessage> replayed = replay(restarted);
+
+		Assertions.assertEquals(ids(logs), ids(replayed));
+		Assertions.assertEquals(logs.get(0).getLogTime(), replayed.get(0).getLogTime());
+		Assertions.assertEquals(logs.get(0).getLogMessage(), replayed.get(0).getLogMessage());
+		Assertions.assertNull(replayed.get(10).getLogTime());
+		Assertions.assertNull(replayed.get(10).getItemId());
+		Assertions.assertTrue(restarted.sealedSegments().isEmpty());
+	}
+
+	@Test
+	void shouldRotateFullSegments() throws IOException {
+		final LogSpillStore store = new LogSpillStore(directory.toString(), 256, 100);
+
+		for (int from = 1; from <= 20; from += 2) {
+			Assertions.assertTrue(store.append(logs(from, from + 1)));
+		}
+		store.rotate();
+
+		Assertions.assertTrue(store.sealedSegments().size() > 1);
+		Assertions.assertEquals(ids(logs(1, 20)), ids(replay(store)));
+	}
+
+	@Test
+	void shouldRejectAllLogsWhenStoreIsFull() throws IOException {
+		final LogSpillStore store = new LogSpillStore(directory.toString(), 256, 2);
+
+		// every append takes a segment of its own
+		Assertions.assertTrue(store.append(logs(1, 10)));
+		Assertions.assertTrue(store.append(logs(11, 20)));
+		Assertions.assertFalse(store.append(logs(21, 30)));
+		store.rotate();
+
+		Assertions.assertEquals(2, store.sealedSegments().size());
+		Assertions.assertEquals(ids(logs(1, 20)), ids(replay(store)));
+	}
+
+	@Test
+	void shouldSkipCorruptedRecord() throws IOException {
+		final LogSpillStore store = new LogSpillStore(directory.toString(), 1024 * 1024, 10);
+		store.append(logs(1, 3));
+		store.rotate();
+		final Path segment = store.sealedSegments().get(0);
+		// flips a byte of the second record payload
+		try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+			file.seek(recordSize() + 20);
+			final int value = file.read();
+			file.seek(recordSize() + 20);
+			file.write(value + 1);
+		}
+
+		Assertions.assertEquals(List.of(1L, 3L), ids(replay(store)));
+	}
+
+	@Test
+	void shouldRotateSegmentByAge() throws IOException {
+		final LogSpillStore store = new LogSpillStore(directory.toString(), 1024 * 1024, 10);
+		store.append(logs(1, 3));
+
+		store.rotate(60_000);
+		Assertions.assertTrue(store.sealedSegments().isEmpty());
+		store.rotate(0);
+		Assertions.assertEquals(1, store.sealedSegments().size());
+	}
+
+	@Test
+	void shouldContinueReplayFromFailedChunk() throws IOException {
+		final LogSpillStore store = new LogSpillStore(directory.toString(), 1024 * 1024, 10);
+		store.append(logs(1, 5));
+		store.rotate();
+		final Path segment = store.sealedSegments().get(0);
+		final List<LogMessage> saved = new ArrayList<>();
+
+		Assertions.assertThrows(IllegalStateException.class, () -> store.replay(segment, 2, chunk -> {
+			if (saved.size() == 2) {
+				throw new IllegalStateException("Elasticsearch is unavailable");
+			}
+			saved.addAll(chunk);
+		}));
+		// the replay position is kept over a restart
+		new LogSpillStore(directory.toString(), 1024 * 1024, 10).replay(segment, 2, saved::addAll);
+
+		Assertions.assertEquals(ids(logs(1, 5)), ids(saved));
+	}
+
+	private static List<LogMessage> replay(LogSpillStore store) throws IOException {
+		final List<LogMessage> replayed = new ArrayList<>();
+		for (Path segment : store.sealedSegments()) {
+			store.replay(segment, 3, replayed::addAll);
+			store.delete(segment);
+		}
+		return replayed;
+	}
+
+	// header, flags, 5 longs, 2 ints and "message N"
+	private static int recordSize() {
+		return 8 + 1 + 40 + 8 + "message 1".length();
+	}
+
+	private static List<LogMessage> logs(long from, long to) {
+		return LongStream.rangeClosed(from, to)
+				.mapToObj(id -> new LogMessage(id, LocalDateTime.now(), "message " + id, 100L, id % 3, 1L))
+				.collect(Collectors.toCollection(ArrayList::new));
+	}
+
+	private static List<Long> ids(List<LogMessage> logs) {
+		return logs.stream().map(LogMessage::getId).collect(Collectors.toList());
+	}
+}
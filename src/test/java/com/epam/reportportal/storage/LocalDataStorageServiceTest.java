@@ -0,0 +1,33 @@
+package com.epam.reportportal.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+class LocalDataStorageServiceTest {
+
+	@TempDir
+	Path storageRoot;
+
+	@Test
+	void shouldDeleteFilesOfAllDirectories() throws IOException {
+		Files.createDirectories(storageRoot.resolve("1"));
+		Files.createDirectories(storageRoot.resolve("2"));
+		Files.createFile(storageRoot.resolve("1/first"));
+		Files.createFile(storageRoot.resolve("1/second"));
+		Files.createFile(storageRoot.resolve("2/third"));
+		final LocalDataStorageService localDataStorageService = new LocalDataStorageService(storageRoot.toString());
+
+		final Map<String, Boolean> result = localDataStorageService.delete(List.of("1/first", "1/second", "2/third", "2/missing"));
+
+		Assertions.assertEquals(Map.of("1/first", true, "1/second", true, "2/third", true, "2/missing", true), result);
+		Assertions.assertFalse(Files.exists(storageRoot.resolve("1/first")));
+		Assertions.assertFalse(Files.exists(storageRoot.resolve("2/third")));
+	}
+}
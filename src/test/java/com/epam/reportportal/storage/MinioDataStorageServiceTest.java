@@ -0,0 +1,52 @@
+package com.epam.reportportal.storage;
+
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MinioDataStorageServiceTest {
+
+	private final MinioClient minioClient = mock(MinioClient.class);
+
+	private final MinioDataStorageService minioDataStorageService = new MinioDataStorageService(minioClient, "prj-", "rp-bucket");
+
+	@Test
+	void shouldDeleteByBucketWithLimitedRequests() {
+		when(minioClient.removeObjects(anyString(), any())).thenReturn(List.of());
+		final List<String> paths = IntStream.range(0, 1500).mapToObj(i -> "1/attachment-" + i).collect(Collectors.toList());
+		paths.add("2/attachment");
+		paths.add("attachment");
+
+		final Map<String, Boolean> result = minioDataStorageService.delete(paths);
+
+		Assertions.assertEquals(paths.size(), result.size());
+		Assertions.assertTrue(result.values().stream().allMatch(Boolean::booleanValue));
+		verify(minioClient, times(2)).removeObjects(eq("prj-1"), any());
+		verify(minioClient).removeObjects("prj-2", List.of("attachment"));
+		verify(minioClient).removeObjects("rp-bucket", List.of("attachment"));
+	}
+
+	@Test
+	void shouldReportFailedObjects() throws Exception {
+		final DeleteError deleteError = mock(DeleteError.class);
+		when(deleteError.objectName()).thenReturn("attachment-2");
+		when(minioClient.removeObjects(anyString(), any())).thenReturn(List.of(new Result<>(deleteError, null)));
+
+		final Map<String, Boolean> result = minioDataStorageService.delete(new ArrayList<>(List.of("1/attachment-1", "1/attachment-2")));
+
+		Assertions.assertEquals(Map.of("1/attachment-1", true, "1/attachment-2", false), result);
+	}
+}